@@ -0,0 +1,615 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist;
+
+import com.flowingcode.vaadin.addons.zoomist.image.DecodedImageCache;
+import com.flowingcode.vaadin.addons.zoomist.image.ImagePool;
+import com.flowingcode.vaadin.addons.zoomist.image.ImageResampler;
+import com.flowingcode.vaadin.addons.zoomist.image.RenditionCache;
+import com.flowingcode.vaadin.addons.zoomist.image.RasterFile;
+import com.flowingcode.vaadin.addons.zoomist.image.RegionDecoder;
+import com.flowingcode.vaadin.addons.zoomist.image.RenderScheduler;
+import com.flowingcode.vaadin.addons.zoomist.image.RenditionKey;
+import com.vaadin.flow.server.HttpStatusCode;
+import com.vaadin.flow.server.InputStreamFactory;
+import com.vaadin.flow.server.streams.DownloadEvent;
+import com.vaadin.flow.server.streams.DownloadHandler;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import lombok.Getter;
+
+/**
+ * Base class for image sources whose renditions are generated on the server.
+ * <p>
+ * Renditions are kept in the {@linkplain RenditionCache#getDefault() shared rendition cache}
+ * under the source {@code id}, so that the id must change whenever the content of the source
+ * image changes. Sources with the same id share a single decoded copy of the image, and
+ * concurrent requests for the same rendition are coalesced. Images that are too large to be kept
+ * in memory are {@linkplain #setStreaming(boolean) decoded by region} instead, or
+ * {@linkplain #setRasterFile(File) converted once} into an uncompressed raster file from which
+ * regions are cut without decoding.
+ * </p>
+ */
+@SuppressWarnings("serial")
+public abstract class AbstractImageSource implements DownloadHandler {
+
+  /** Header that marks speculative requests sent by the client to prefetch renditions. */
+  private static final String PREFETCH_HEADER = "X-Zoomist-Prefetch";
+
+  /** Number of pixels above which images are decoded by region. */
+  private static final long STREAMING_THRESHOLD =
+      Long.getLong("zoomist.decode.maxPixels", 32L * 1024 * 1024);
+
+  /** Raster files being converted, by absolute path, which may be shared by several sources. */
+  private static final ConcurrentMap<String, CompletableFuture<RasterFile>> CONVERSIONS =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Ids of the sources whose conversion failed, by absolute path of the raster file, so that the
+   * conversion is not retried for every rendition.
+   */
+  private static final ConcurrentMap<String, String> FAILED_CONVERSIONS =
+      new ConcurrentHashMap<>();
+
+  /** Converts raster files one at a time, so that conversions do not compete for the disk. */
+  private static final ExecutorService RASTER_CONVERTER = Executors.newSingleThreadExecutor(
+      task -> {
+        Thread thread = new Thread(task, "zoomist-raster-converter");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /** Maximum width and height of the placeholder image. */
+  private static final int PLACEHOLDER_SIZE = 32;
+
+  @Getter
+  private final String id;
+
+  private final InputStreamFactory factory;
+
+  @Getter
+  private String format = "jpeg";
+
+  private final File file;
+
+  @Getter
+  private long lastModified;
+
+  @Getter
+  private long maxAge = 3600;
+
+  private int width;
+
+  private int height;
+
+  private String mimeType;
+
+  private Boolean streaming;
+
+  @Getter
+  private volatile File rasterFile;
+
+  private transient volatile RasterFile raster;
+
+  /**
+   * Creates a new source for the specified image.
+   *
+   * @param id a string that uniquely identifies the source image
+   * @param factory the factory of the source image stream
+   */
+  protected AbstractImageSource(String id, InputStreamFactory factory) {
+    this.id = Objects.requireNonNull(id);
+    this.factory = Objects.requireNonNull(factory);
+    file = null;
+  }
+
+  /**
+   * Creates a new source for the specified image file. The source id is derived from the path
+   * and modification time of the file.
+   *
+   * @param file the source image file
+   */
+  protected AbstractImageSource(File file) {
+    lastModified = file.lastModified();
+    id = file.getAbsolutePath() + "#" + lastModified;
+    factory = () -> {
+      try {
+        return new FileInputStream(file);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    };
+    this.file = file;
+  }
+
+  /**
+   * Sets the format used for encoding the renditions. Default is {@code "jpeg"}.
+   *
+   * @param format the image format name, e.g. {@code "jpeg"} or {@code "png"}
+   */
+  public void setFormat(String format) {
+    this.format = Objects.requireNonNull(format);
+  }
+
+  /**
+   * Sets the modification time of the source image, which is sent as {@code Last-Modified}
+   * header. Sources created from a file use the modification time of the file.
+   *
+   * @param lastModified the modification time in milliseconds since the epoch, or 0 if unknown
+   */
+  public void setLastModified(long lastModified) {
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * Sets the time the browser may use a downloaded image without revalidating it with the
+   * server. Default is one hour. After that time, the browser revalidates the image and receives
+   * a {@code 304 Not Modified} response if it has not changed.
+   *
+   * @param maxAge the maximum age in seconds, or 0 for always revalidating
+   */
+  public void setMaxAge(long maxAge) {
+    this.maxAge = maxAge;
+  }
+
+  /**
+   * Returns the width of the source image. The dimensions of the source image are read from its
+   * header, without decoding it.
+   *
+   * @return the width of the source image
+   */
+  public int getWidth() {
+    readHeader();
+    return width;
+  }
+
+  /**
+   * Returns the height of the source image. The dimensions of the source image are read from its
+   * header, without decoding it.
+   *
+   * @return the height of the source image
+   */
+  public int getHeight() {
+    readHeader();
+    return height;
+  }
+
+  /**
+   * Returns the MIME type of the source image.
+   *
+   * @return the MIME type of the source image
+   */
+  protected String getMimeType() {
+    readHeader();
+    return mimeType;
+  }
+
+  private synchronized void readHeader() {
+    if (mimeType != null) {
+      return;
+    }
+    ImagePool pool = ImagePool.getDefault();
+    try (ImageInputStream iis = openImageStream()) {
+      ImageReader reader = pool.borrowReader(iis);
+      try {
+        width = reader.getWidth(0);
+        height = reader.getHeight(0);
+        String[] mimeTypes = reader.getOriginatingProvider().getMIMETypes();
+        mimeType = mimeTypes != null && mimeTypes.length > 0 ? mimeTypes[0]
+            : "image/" + reader.getFormatName().toLowerCase();
+      } finally {
+        pool.releaseReader(reader);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Opens the source image for decoding. File sources are read with random access, instead of
+   * going through the stream cache that {@link ImageIO} uses for input streams.
+   */
+  private ImageInputStream openImageStream() throws IOException {
+    ImageInputStream iis;
+    if (file != null) {
+      iis = ImageIO.createImageInputStream(file);
+    } else {
+      InputStream in = factory.createInputStream();
+      iis = ImageIO.createImageInputStream(in);
+      if (iis == null) {
+        in.close();
+      }
+    }
+    if (iis == null) {
+      throw new IOException("Cannot read image: " + id);
+    }
+    return iis;
+  }
+
+  /**
+   * Returns a cached rendition of this source, generating it if needed.
+   *
+   * @param variant the kind of rendition
+   * @param level the pyramid level, or resolution of the rendition
+   * @param x the tile column, or 0 if the rendition is not a tile
+   * @param y the tile row, or 0 if the rendition is not a tile
+   * @param loader the loader that generates the rendition
+   * @return the encoded rendition
+   * @throws IOException if the rendition cannot be generated
+   */
+  protected byte[] getRendition(String variant, int level, int x, int y,
+      RenditionCache.Loader loader) throws IOException {
+    return RenditionCache.getDefault().get(new RenditionKey(id, variant, level, x, y), loader);
+  }
+
+  /**
+   * Renders a tiny version of the image, that is displayed while the actual image is loading.
+   *
+   * @return the encoded placeholder image
+   * @throws IOException if the source image cannot be read
+   */
+  public byte[] renderPlaceholder() throws IOException {
+    double scale = Math.min(1, (double) PLACEHOLDER_SIZE / Math.max(getWidth(), getHeight()));
+    int w = Math.max(1, (int) Math.round(getWidth() * scale));
+    int h = Math.max(1, (int) Math.round(getHeight() * scale));
+    return getRendition(getPlaceholderVariant(), PLACEHOLDER_SIZE, 0, 0,
+        () -> render(new Rectangle(0, 0, getWidth(), getHeight()), w, h));
+  }
+
+  private String getPlaceholderVariant() {
+    return "placeholder." + format;
+  }
+
+  /**
+   * Returns the placeholder data URL if the placeholder is in the rendition cache, without
+   * generating it otherwise.
+   */
+  String getCachedPlaceholderDataUrl() {
+    byte[] data = RenditionCache.getDefault()
+        .getIfPresent(new RenditionKey(id, getPlaceholderVariant(), PLACEHOLDER_SIZE, 0, 0));
+    return data != null ? toDataUrl(data) : null;
+  }
+
+  /**
+   * Writes the placeholder image to the response.
+   */
+  void writePlaceholder(DownloadEvent event) throws IOException {
+    write(event, getPlaceholderVariant(), PLACEHOLDER_SIZE, 0, 0, this::renderPlaceholder);
+  }
+
+  /**
+   * Returns the {@linkplain #renderPlaceholder() placeholder image} as a data URL, so that it can
+   * be embedded in the page without an additional request.
+   *
+   * @return the placeholder data URL
+   */
+  public String getPlaceholderDataUrl() {
+    try {
+      return toDataUrl(renderPlaceholder());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private String toDataUrl(byte[] data) {
+    return "data:image/" + format + ";base64," + Base64.getEncoder().encodeToString(data);
+  }
+
+  /**
+   * Resamples a region of the source image and encodes it in the configured format.
+   *
+   * @param region the region of the source image
+   * @param width the target width
+   * @param height the target height
+   * @return the encoded image
+   * @throws IOException if the source image cannot be read
+   */
+  protected byte[] render(Rectangle region, int width, int height) throws IOException {
+    BufferedImage image = read(region, width, height);
+    try {
+      return ImageResampler.encode(image, format);
+    } finally {
+      ImagePool.getDefault().releaseImage(image);
+    }
+  }
+
+  /**
+   * Resamples a region of the source image, without encoding it.
+   *
+   * @param region the region of the source image
+   * @param width the target width
+   * @param height the target height
+   * @return the resampled region, which is not referenced anywhere else and can be
+   *         {@linkplain ImagePool#releaseImage(BufferedImage) recycled}
+   * @throws IOException if the source image cannot be read
+   */
+  protected BufferedImage read(Rectangle region, int width, int height) throws IOException {
+    boolean alpha = ImageResampler.supportsAlpha(format);
+    File file = rasterFile;
+    RasterFile raster = file != null ? getRaster(file) : null;
+    if (raster != null) {
+      return raster.read(region, width, height, alpha);
+    } else if (!isStreaming()) {
+      return ImageResampler.resample(getImage(), region, width, height, alpha);
+    }
+    BufferedImage image = RegionDecoder.decode(this::openImageStream, region, width, height);
+    try {
+      return ImageResampler.resample(image,
+          new Rectangle(0, 0, image.getWidth(), image.getHeight()), width, height, alpha);
+    } finally {
+      ImagePool.getDefault().releaseImage(image);
+    }
+  }
+
+  /**
+   * Sets whether renditions are generated by decoding only the region and resolution they need,
+   * instead of decoding the whole image once and keeping it in memory. By default, streaming is
+   * used for images larger than the {@code zoomist.decode.maxPixels} system property (32
+   * megapixels by default).
+   *
+   * @param streaming if true, each rendition decodes only the region it needs
+   */
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
+  /**
+   * Returns whether renditions are generated by decoding only the region and resolution they
+   * need.
+   *
+   * @return true if each rendition decodes only the region it needs
+   */
+  public boolean isStreaming() {
+    if (streaming != null) {
+      return streaming;
+    }
+    return (long) getWidth() * getHeight() > STREAMING_THRESHOLD;
+  }
+
+  /**
+   * Sets a file where the source image is kept as an uncompressed raster, from which renditions
+   * are generated without decoding the source image. The raster file is memory-mapped, and it is
+   * converted in the background from the source image the first time a rendition is generated,
+   * or again if it was converted from a source with a different id. Until the conversion
+   * completes, or if it fails, renditions are generated from the source image. This takes about
+   * 3 or 4 bytes of disk per pixel, and is intended for huge images whose tiles are generated on
+   * demand.
+   *
+   * @param rasterFile the raster file, or {@code null} for decoding the source image
+   */
+  public synchronized void setRasterFile(File rasterFile) {
+    this.rasterFile = rasterFile;
+    raster = null;
+  }
+
+  /**
+   * Converts the {@linkplain #setRasterFile(File) raster file} in the calling thread, unless it
+   * is already up to date, so that the renditions generated afterwards are cut from it instead of
+   * decoding the source image. This is intended for generating every rendition of a huge image
+   * at once, where decoding a region at a time would decode the source over and over.
+   *
+   * @throws IOException if the image cannot be read or the raster file cannot be written
+   * @throws IllegalStateException if there is no raster file
+   */
+  public void convertRasterFile() throws IOException {
+    File file = rasterFile;
+    if (file == null) {
+      throw new IllegalStateException("No raster file");
+    }
+    if (file.isFile()) {
+      try {
+        RasterFile current = RasterFile.open(file);
+        if (current.getSourceId().equals(id)) {
+          setRaster(file, current);
+          return;
+        }
+      } catch (IOException e) {
+        // convert it again
+      }
+    }
+    setRaster(file, RasterFile.convert(this::openImageStream, file, id));
+    FAILED_CONVERSIONS.remove(file.getAbsolutePath(), id);
+  }
+
+  /**
+   * Returns the raster file, or {@code null} while it is being converted or if its conversion
+   * failed.
+   */
+  private RasterFile getRaster(File file) {
+    RasterFile raster = this.raster;
+    if (raster != null) {
+      return raster;
+    }
+    String path = file.getAbsolutePath();
+    CompletableFuture<RasterFile> conversion = CONVERSIONS.get(path);
+    if (conversion == null) {
+      if (id.equals(FAILED_CONVERSIONS.get(path))) {
+        return null;
+      }
+      if (file.isFile()) {
+        try {
+          RasterFile current = RasterFile.open(file);
+          if (current.getSourceId().equals(id)) {
+            return setRaster(file, current);
+          }
+        } catch (IOException e) {
+          // convert it again
+        }
+      }
+      CompletableFuture<RasterFile> started = new CompletableFuture<>();
+      conversion = CONVERSIONS.putIfAbsent(path, started);
+      if (conversion == null) {
+        conversion = started;
+        RASTER_CONVERTER.execute(() -> {
+          try {
+            started.complete(RasterFile.convert(this::openImageStream, file, id));
+          } catch (Throwable t) {
+            FAILED_CONVERSIONS.put(path, id);
+            started.completeExceptionally(t);
+          }
+        });
+      }
+    }
+    if (!conversion.isDone()) {
+      return null;
+    }
+
+    CONVERSIONS.remove(path, conversion);
+    if (conversion.isCompletedExceptionally()) {
+      // the failure was remembered, so that it is not converted again
+      return null;
+    }
+    // another source may have converted the file from a different image
+    RasterFile current = conversion.join();
+    return current.getSourceId().equals(id) ? setRaster(file, current) : null;
+  }
+
+  private synchronized RasterFile setRaster(File file, RasterFile raster) {
+    if (file.equals(rasterFile)) {
+      this.raster = raster;
+    }
+    return raster;
+  }
+
+  private BufferedImage getImage() throws IOException {
+    return DecodedImageCache.getDefault().get(id, () -> {
+      ImagePool pool = ImagePool.getDefault();
+      try (ImageInputStream iis = openImageStream()) {
+        ImageReader reader = pool.borrowReader(iis);
+        try {
+          return reader.read(0);
+        } finally {
+          pool.releaseReader(reader);
+        }
+      }
+    });
+  }
+
+  /**
+   * Writes an encoded rendition to the response. The rendition is identified by its variant,
+   * level and coordinates, so that a {@code 304 Not Modified} response can be sent without
+   * generating it. Speculative requests sent by the client to prefetch renditions are only served
+   * if the rendition is {@linkplain #isRenditionCheap cheap to serve} or the
+   * {@linkplain RenderScheduler#getDefault() scheduler} admits them, and are otherwise rejected
+   * with {@code 503 Service Unavailable}.
+   *
+   * @param event the download event
+   * @param variant the kind of rendition
+   * @param level the pyramid level, or resolution of the rendition
+   * @param x the tile column, or 0 if the rendition is not a tile
+   * @param y the tile row, or 0 if the rendition is not a tile
+   * @param loader the loader that returns the encoded rendition
+   * @throws IOException if an I/O error occurs
+   */
+  protected void write(DownloadEvent event, String variant, int level, int x, int y,
+      RenditionCache.Loader loader) throws IOException {
+    writeContent(event, variant, level, x, y, () -> HttpCaching.of(loader.load()));
+  }
+
+  /**
+   * Writes a rendition to the response, as {@link #write(DownloadEvent, String, int, int, int,
+   * RenditionCache.Loader)} does, with a loader that returns the content of the response.
+   */
+  void writeContent(DownloadEvent event, String variant, int level, int x, int y,
+      HttpCaching.ContentLoader content) throws IOException {
+    String etag = HttpCaching.etag(id, variant, level, x, y);
+    schedule(event, "image/" + format, etag, () -> isRenditionCheap(variant, level, x, y),
+        content);
+  }
+
+  /**
+   * Writes a response once the {@linkplain RenderScheduler#getDefault() scheduler} admits it.
+   * Visible requests are always served, and speculative requests are served if the content is
+   * cheap or the scheduler admits them.
+   */
+  private void schedule(DownloadEvent event, String contentType, String etag,
+      BooleanSupplier cheap, HttpCaching.ContentLoader content) throws IOException {
+    RenderScheduler scheduler = RenderScheduler.getDefault();
+    if (event.getRequest().getHeader(PREFETCH_HEADER) == null) {
+      scheduler.beginVisible();
+      try {
+        HttpCaching.write(event, contentType, etag, lastModified, maxAge, content);
+      } finally {
+        scheduler.endVisible();
+      }
+    } else if (cheap.getAsBoolean()) {
+      HttpCaching.write(event, contentType, etag, lastModified, maxAge, content);
+    } else if (scheduler.tryBeginSpeculative()) {
+      try {
+        HttpCaching.write(event, contentType, etag, lastModified, maxAge, content);
+      } finally {
+        scheduler.endSpeculative();
+      }
+    } else {
+      event.getResponse().setHeader("Cache-Control", "no-store");
+      event.getResponse().setHeader("Retry-After", "1");
+      event.getResponse().sendError(HttpStatusCode.SERVICE_UNAVAILABLE.getCode(),
+          "Busy with visible requests");
+    }
+  }
+
+  /**
+   * Returns whether a rendition can be served without generating it, so that speculative
+   * requests for it are always admitted. By default, this is the case if the rendition is in the
+   * rendition cache.
+   *
+   * @param variant the kind of rendition
+   * @param level the pyramid level, or resolution of the rendition
+   * @param x the tile column, or 0 if the rendition is not a tile
+   * @param y the tile row, or 0 if the rendition is not a tile
+   * @return true if the rendition is cheap to serve
+   */
+  protected boolean isRenditionCheap(String variant, int level, int x, int y) {
+    return RenditionCache.getDefault().containsKey(new RenditionKey(id, variant, level, x, y));
+  }
+
+  /**
+   * Writes the unmodified source image to the response. If the source is a file, byte range
+   * requests are supported. Only containers that support sendfile (such as Tomcat) send the file
+   * without copying it through the JVM; on other containers, such as Jetty, it is copied to the
+   * response stream through a heap buffer. The original is the largest response, so it is never
+   * considered cheap: speculative requests for it are subject to the scheduler, as renditions
+   * are.
+   *
+   * @param event the download event
+   * @throws IOException if an I/O error occurs
+   */
+  protected void writeOriginal(DownloadEvent event) throws IOException {
+    schedule(event, getMimeType(), HttpCaching.etag(id), () -> false,
+        () -> file != null ? HttpCaching.of(file) : HttpCaching.of(factory, -1));
+  }
+
+}
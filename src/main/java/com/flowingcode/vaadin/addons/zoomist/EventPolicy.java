@@ -0,0 +1,169 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist;
+
+import com.vaadin.flow.component.DebounceSettings;
+import com.vaadin.flow.component.DomEvent;
+import com.vaadin.flow.dom.DebouncePhase;
+import com.vaadin.flow.dom.DomListenerRegistration;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Policy that determines how often an event type is delivered from the client to the server.
+ *
+ * @see Zoomist#setEventPolicy(Class, EventPolicy)
+ */
+public final class EventPolicy implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final EventPolicy IMMEDIATE = new EventPolicy(false, 0, null);
+
+  private static final EventPolicy DISABLED = new EventPolicy(true, 0, null);
+
+  private final boolean disabled;
+
+  private final int timeout;
+
+  private final DebouncePhase[] phases;
+
+  private EventPolicy(boolean disabled, int timeout, DebouncePhase[] phases) {
+    this.disabled = disabled;
+    this.timeout = timeout;
+    this.phases = phases;
+  }
+
+  /**
+   * Returns a policy that delivers every event as soon as it happens.
+   *
+   * @return the immediate policy
+   */
+  public static EventPolicy immediate() {
+    return IMMEDIATE;
+  }
+
+  /**
+   * Returns a policy that never delivers the event to the server.
+   *
+   * @return the disabled policy
+   */
+  public static EventPolicy disabled() {
+    return DISABLED;
+  }
+
+  /**
+   * Returns a policy that delivers the event once no more events have happened for the given
+   * timeout.
+   *
+   * @param timeout the debounce timeout in milliseconds
+   * @return the debounce policy
+   */
+  public static EventPolicy debounce(int timeout) {
+    return debounce(timeout, DebouncePhase.TRAILING);
+  }
+
+  /**
+   * Returns a policy that debounces the event, delivering it in the given phases.
+   * {@link DebouncePhase#LEADING} delivers the first event of a burst,
+   * {@link DebouncePhase#INTERMEDIATE} delivers an event periodically while the burst lasts, and
+   * {@link DebouncePhase#TRAILING} delivers the last event once the burst is over.
+   *
+   * @param timeout the debounce timeout in milliseconds
+   * @param firstPhase the first phase in which the event is delivered
+   * @param additionalPhases additional phases in which the event is delivered
+   * @return the debounce policy
+   */
+  public static EventPolicy debounce(int timeout, DebouncePhase firstPhase,
+      DebouncePhase... additionalPhases) {
+    if (timeout <= 0) {
+      throw new IllegalArgumentException("Timeout must be positive");
+    }
+    DebouncePhase[] phases = new DebouncePhase[additionalPhases.length + 1];
+    phases[0] = Objects.requireNonNull(firstPhase);
+    System.arraycopy(additionalPhases, 0, phases, 1, additionalPhases.length);
+    return new EventPolicy(false, timeout, phases);
+  }
+
+  /**
+   * Returns a policy that delivers the first event immediately, and then at most one event per
+   * period while events keep happening.
+   *
+   * @param period the throttle period in milliseconds
+   * @return the throttle policy
+   */
+  public static EventPolicy throttle(int period) {
+    return debounce(period, DebouncePhase.LEADING, DebouncePhase.INTERMEDIATE);
+  }
+
+  /**
+   * Returns the policy declared by the {@link DomEvent} annotation of an event type.
+   */
+  static EventPolicy of(Class<?> eventType) {
+    DomEvent annotation = eventType.getAnnotation(DomEvent.class);
+    DebounceSettings settings = annotation != null ? annotation.debounce() : null;
+    if (settings == null || settings.timeout() <= 0 || settings.phases().length == 0) {
+      return IMMEDIATE;
+    }
+    DebouncePhase[] phases = settings.phases();
+    return debounce(settings.timeout(), phases[0], Arrays.copyOfRange(phases, 1, phases.length));
+  }
+
+  /**
+   * Returns whether this policy never delivers events.
+   *
+   * @return true if the policy is {@link #disabled()}
+   */
+  public boolean isDisabled() {
+    return disabled;
+  }
+
+  /** Preserves the identity of the shared instances across serialization. */
+  private Object readResolve() {
+    if (disabled) {
+      return DISABLED;
+    } else if (phases == null) {
+      return IMMEDIATE;
+    }
+    return this;
+  }
+
+  void applyTo(DomListenerRegistration registration) {
+    // a filter that is never satisfied stops the client from sending the event at all
+    registration.setFilter(isDisabled() ? "false" : null);
+    if (phases == null) {
+      registration.debounce(0);
+    } else {
+      registration.debounce(timeout, phases[0], Arrays.copyOfRange(phases, 1, phases.length));
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (isDisabled()) {
+      return "EventPolicy[disabled]";
+    } else if (phases == null) {
+      return "EventPolicy[immediate]";
+    }
+    return "EventPolicy[" + timeout + "ms, " + Arrays.toString(phases) + "]";
+  }
+
+}
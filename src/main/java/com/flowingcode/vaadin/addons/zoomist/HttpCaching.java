@@ -0,0 +1,418 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist;
+
+import com.vaadin.flow.server.InputStreamFactory;
+import com.vaadin.flow.server.VaadinRequest;
+import com.vaadin.flow.server.VaadinResponse;
+import com.vaadin.flow.server.streams.DownloadEvent;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Writes image responses honoring HTTP validators ({@code ETag}, {@code Last-Modified}),
+ * {@code Cache-Control} and single byte range requests.
+ */
+final class HttpCaching {
+
+  private static final int SC_PARTIAL_CONTENT = 206;
+  private static final int SC_NOT_MODIFIED = 304;
+  private static final int SC_RANGE_NOT_SATISFIABLE = 416;
+
+  /** Returned by {@link #parseRange(String, long)} for ranges that cannot be satisfied. */
+  static final long[] UNSATISFIABLE = new long[0];
+
+  /** Request attribute set by containers that can send files without copying them. */
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  /**
+   * The body of a response.
+   */
+  interface Content {
+
+    /**
+     * Returns the length of the content in bytes.
+     *
+     * @return the content length, or -1 if it is not known
+     */
+    long getLength();
+
+    /**
+     * Writes a range of the content.
+     *
+     * @param out the output stream
+     * @param offset the offset of the first byte to write
+     * @param count the number of bytes to write, or -1 to write the whole content
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(OutputStream out, long offset, long count) throws IOException;
+
+    /**
+     * Hands a range of the content over to the container, which sends it without it going
+     * through the output stream.
+     *
+     * @param request the request
+     * @param offset the offset of the first byte to send
+     * @param count the number of bytes to send
+     * @return {@code true} if the container sends the content, {@code false} if it must be written
+     */
+    default boolean sendTo(VaadinRequest request, long offset, long count) {
+      return false;
+    }
+  }
+
+  /**
+   * Loads the body of a response, once it is known that it has to be sent.
+   */
+  @FunctionalInterface
+  interface ContentLoader {
+    /**
+     * Loads the content.
+     *
+     * @return the content
+     * @throws IOException if the content cannot be loaded
+     */
+    Content load() throws IOException;
+  }
+
+  private HttpCaching() {}
+
+  /**
+   * Returns a strong entity tag computed from the given parts.
+   */
+  static String etag(Object... parts) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (Object part : parts) {
+        digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+      }
+      StringBuilder sb = new StringBuilder("\"");
+      byte[] hash = digest.digest();
+      for (int i = 0; i < 16; i++) {
+        sb.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+        sb.append(Character.forDigit(hash[i] & 0xF, 16));
+      }
+      return sb.append('"').toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the content of a byte array.
+   */
+  static Content of(byte[] data) {
+    return new Content() {
+      @Override
+      public long getLength() {
+        return data.length;
+      }
+
+      @Override
+      public void writeTo(OutputStream out, long offset, long count) throws IOException {
+        out.write(data, (int) offset, (int) (count < 0 ? data.length - offset : count));
+      }
+    };
+  }
+
+  /**
+   * Returns the content of a buffer, such as a slice of a memory-mapped file, which is written
+   * without copying it into an array of its own.
+   */
+  static Content of(ByteBuffer data) {
+    return new Content() {
+      @Override
+      public long getLength() {
+        return data.remaining();
+      }
+
+      @Override
+      public void writeTo(OutputStream out, long offset, long count) throws IOException {
+        ByteBuffer range = data.duplicate();
+        range.position(range.position() + (int) offset);
+        if (count >= 0) {
+          range.limit(range.position() + (int) count);
+        }
+        if (range.hasArray()) {
+          out.write(range.array(), range.arrayOffset() + range.position(), range.remaining());
+          return;
+        }
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (range.hasRemaining()) {
+          channel.write(range);
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns the content of a stream, which is skipped up to the requested offset.
+   */
+  static Content of(InputStreamFactory factory, long length) {
+    return new Content() {
+      @Override
+      public long getLength() {
+        return length;
+      }
+
+      @Override
+      public void writeTo(OutputStream out, long offset, long count) throws IOException {
+        try (InputStream in = factory.createInputStream()) {
+          in.skipNBytes(offset);
+          if (count < 0) {
+            in.transferTo(out);
+            return;
+          }
+          byte[] buffer = new byte[8192];
+          long remaining = count;
+          while (remaining > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (n < 0) {
+              break;
+            }
+            out.write(buffer, 0, n);
+            remaining -= n;
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns the content of a file. Containers that support sendfile (such as Tomcat with the NIO
+   * connector) send the file themselves, with {@code sendfile(2)} where the platform allows it.
+   * Otherwise the file is copied to the output stream.
+   */
+  static Content of(File file) {
+    long length = file.length();
+    return new Content() {
+      @Override
+      public long getLength() {
+        return length;
+      }
+
+      @Override
+      public boolean sendTo(VaadinRequest request, long offset, long count) {
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+          return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+        request.setAttribute(SENDFILE_START, offset);
+        request.setAttribute(SENDFILE_END, offset + count);
+        return true;
+      }
+
+      @Override
+      public void writeTo(OutputStream out, long offset, long count) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+          long position = offset;
+          long remaining = count < 0 ? length - offset : count;
+          while (remaining > 0) {
+            long n = channel.transferTo(position, remaining, target);
+            if (n <= 0) {
+              // the file was truncated while being transferred
+              break;
+            }
+            position += n;
+            remaining -= n;
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Writes a response. If the client already has a current copy of the resource, responds with
+   * {@code 304 Not Modified} without loading the content. If the request specifies a single
+   * byte range and the content length is known, only that range is written.
+   *
+   * @param event the download event
+   * @param contentType the MIME type of the content
+   * @param etag the entity tag of the content
+   * @param lastModified the modification time of the content, or 0 if it is not known
+   * @param maxAge the time in seconds the response may be cached without revalidation
+   * @param loader the loader of the content
+   */
+  static void write(DownloadEvent event, String contentType, String etag, long lastModified,
+      long maxAge, ContentLoader loader) throws IOException {
+    VaadinRequest request = event.getRequest();
+    VaadinResponse response = event.getResponse();
+
+    response.setHeader("ETag", etag);
+    if (lastModified > 0) {
+      response.setDateHeader("Last-Modified", lastModified);
+    }
+    response.setHeader("Cache-Control", maxAge > 0 ? "private, max-age=" + maxAge : "no-cache");
+
+    if (isNotModified(request.getHeader("If-None-Match"),
+        request.getDateHeader("If-Modified-Since"), etag, lastModified)) {
+      response.setStatus(SC_NOT_MODIFIED);
+      return;
+    }
+
+    Content content = loader.load();
+    long length = content.getLength();
+    long offset = 0;
+    long count = length;
+    if (length >= 0) {
+      response.setHeader("Accept-Ranges", "bytes");
+      String range = request.getHeader("Range");
+      if (range != null && isRangeApplicable(request, etag, lastModified)) {
+        long[] bounds = parseRange(range, length);
+        if (bounds == UNSATISFIABLE) {
+          response.setHeader("Content-Range", "bytes */" + length);
+          response.setStatus(SC_RANGE_NOT_SATISFIABLE);
+          return;
+        } else if (bounds != null) {
+          offset = bounds[0];
+          count = bounds[1] - bounds[0] + 1;
+          response.setStatus(SC_PARTIAL_CONTENT);
+          response.setHeader("Content-Range",
+              "bytes " + bounds[0] + "-" + bounds[1] + "/" + length);
+        }
+      }
+    }
+
+    event.setContentType(contentType);
+    if (count >= 0) {
+      event.setContentLength(count);
+      if (content.sendTo(request, offset, count)) {
+        return;
+      }
+    }
+    try (OutputStream out = event.getOutputStream()) {
+      content.writeTo(out, offset, count);
+    }
+  }
+
+  /**
+   * Returns whether the client has a current copy of the content.
+   *
+   * @param ifNoneMatch the {@code If-None-Match} header, or {@code null}
+   * @param ifModifiedSince the {@code If-Modified-Since} header, or -1
+   * @param etag the entity tag of the content
+   * @param lastModified the modification time of the content, or 0 if it is not known
+   * @return true if a {@code 304 Not Modified} response can be sent
+   */
+  static boolean isNotModified(String ifNoneMatch, long ifModifiedSince, String etag,
+      long lastModified) {
+    if (ifNoneMatch != null) {
+      // weak comparison, as required for If-None-Match
+      for (String tag : ifNoneMatch.split(",")) {
+        tag = tag.trim();
+        if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return lastModified > 0 && ifModifiedSince >= 0
+        && lastModified / 1000 <= ifModifiedSince / 1000;
+  }
+
+  private static boolean isRangeApplicable(VaadinRequest request, String etag, long lastModified) {
+    String ifRange = request.getHeader("If-Range");
+    if (ifRange == null || ifRange.startsWith("\"")) {
+      return isRangeApplicable(ifRange, -1, etag, lastModified);
+    }
+    return isRangeApplicable(ifRange, request.getDateHeader("If-Range"), etag, lastModified);
+  }
+
+  /**
+   * Returns whether a range request applies to the current content, as given by its
+   * {@code If-Range} header.
+   *
+   * @param ifRange the {@code If-Range} header, or {@code null}
+   * @param ifRangeDate the {@code If-Range} header as a date, if it is not an entity tag
+   * @param etag the entity tag of the content
+   * @param lastModified the modification time of the content, or 0 if it is not known
+   * @return true if only the range must be sent, false if the whole content must be sent
+   */
+  static boolean isRangeApplicable(String ifRange, long ifRangeDate, String etag,
+      long lastModified) {
+    if (ifRange == null) {
+      return true;
+    } else if (ifRange.startsWith("\"")) {
+      return ifRange.equals(etag);
+    } else {
+      return lastModified > 0 && lastModified / 1000 == ifRangeDate / 1000;
+    }
+  }
+
+  /**
+   * Parses a single byte range.
+   *
+   * @return the first and last byte positions, {@link #UNSATISFIABLE}, or {@code null} if the
+   *         range is not supported and the whole content must be sent
+   */
+  static long[] parseRange(String range, long length) {
+    if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+      return null;
+    } else if (length == 0) {
+      return UNSATISFIABLE;
+    }
+    String spec = range.substring(6).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+    try {
+      long start;
+      long end;
+      if (dash == 0) {
+        long suffix = Long.parseLong(spec.substring(1));
+        if (suffix <= 0) {
+          return UNSATISFIABLE;
+        }
+        start = Math.max(0, length - suffix);
+        end = length - 1;
+      } else {
+        start = Long.parseLong(spec.substring(0, dash));
+        if (start >= length) {
+          return UNSATISFIABLE;
+        }
+        end = dash == spec.length() - 1 ? length - 1
+            : Math.min(length - 1, Long.parseLong(spec.substring(dash + 1)));
+        if (end < start) {
+          return null;
+        }
+      }
+      return new long[] {start, end};
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+}
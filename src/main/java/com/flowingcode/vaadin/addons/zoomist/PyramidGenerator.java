@@ -0,0 +1,352 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist;
+
+import com.flowingcode.vaadin.addons.zoomist.image.ArchiveTileStore;
+import com.flowingcode.vaadin.addons.zoomist.image.TileDirectory;
+import com.flowingcode.vaadin.addons.zoomist.image.TileStore;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+
+/**
+ * Generates the tile pyramids of a directory of images ahead of time, so that they are
+ * {@linkplain TiledImageSource#setTileStore(TileStore) served} without rendering tiles
+ * at request time.
+ * <p>
+ * For each image in the input directory, a {@link TileDirectory} is written to the output
+ * directory, at the same relative path as the image, e.g. the pyramid of
+ * {@code photos/a.jpg} is written into the directory {@code photos/a.jpg/}. With the
+ * {@code --archive} option, the pyramid is written as a single {@link ArchiveTileStore} file
+ * {@code photos/a.jpg.tiles} instead. Images whose pyramid is up to date are skipped. Images
+ * that are {@linkplain AbstractImageSource#isStreaming() too large to be decoded at once} are
+ * first converted into a temporary {@linkplain AbstractImageSource#setRasterFile(File) raster
+ * file} next to their pyramid, so that they are decoded a single time.
+ * </p>
+ * <p>
+ * The generator can be run from the command line, or with the {@code pyramids} Maven profile:
+ * </p>
+ *
+ * <pre>
+ * mvn -Ppyramids -Dpyramids.input=images -Dpyramids.output=tiles [-Dpyramids.archive=true]
+ * </pre>
+ */
+public class PyramidGenerator {
+
+  private static final String USAGE = "Usage: PyramidGenerator [--format jpeg|png] "
+      + "[--tile-size size] [--archive[=true|false]] [--force[=true|false]] "
+      + "<input directory> <output directory>";
+
+  private final Path input;
+
+  private final Path output;
+
+  private String format = "jpeg";
+
+  private int tileSize = TiledImageSource.DEFAULT_TILE_SIZE;
+
+  private boolean archive;
+
+  private boolean force;
+
+  private PrintStream log;
+
+  /**
+   * Creates a new generator.
+   *
+   * @param input the directory that contains the source images
+   * @param output the directory where the pyramids are written
+   */
+  public PyramidGenerator(File input, File output) {
+    this.input = input.toPath().toAbsolutePath().normalize();
+    this.output = output.toPath().toAbsolutePath().normalize();
+  }
+
+  /**
+   * Sets the format of the generated tiles. Default is {@code "jpeg"}.
+   *
+   * @param format the image format name, e.g. {@code "jpeg"} or {@code "png"}
+   * @return this generator
+   */
+  public PyramidGenerator setFormat(String format) {
+    this.format = Objects.requireNonNull(format);
+    return this;
+  }
+
+  /**
+   * Sets the width and height of the generated tiles. Default is 256.
+   *
+   * @param tileSize the tile size
+   * @return this generator
+   */
+  public PyramidGenerator setTileSize(int tileSize) {
+    if (tileSize <= 0) {
+      throw new IllegalArgumentException("Tile size must be positive");
+    }
+    this.tileSize = tileSize;
+    return this;
+  }
+
+  /**
+   * Sets whether each pyramid is written as a single archive file, instead of a directory.
+   *
+   * @param archive if true, pyramids are written as {@link ArchiveTileStore} files
+   * @return this generator
+   */
+  public PyramidGenerator setArchive(boolean archive) {
+    this.archive = archive;
+    return this;
+  }
+
+  /**
+   * Sets whether pyramids that are up to date are generated again.
+   *
+   * @param force if true, every pyramid is generated
+   * @return this generator
+   */
+  public PyramidGenerator setForce(boolean force) {
+    this.force = force;
+    return this;
+  }
+
+  /**
+   * Sets the stream where progress is reported. By default, progress is not reported.
+   *
+   * @param log the progress stream
+   * @return this generator
+   */
+  public PyramidGenerator setLog(PrintStream log) {
+    this.log = log;
+    return this;
+  }
+
+  /**
+   * Returns the tile store where the pyramid of an image is written.
+   *
+   * @param image the source image, in the input directory
+   * @return the tile store of the image, which is either a {@link TileDirectory} or an
+   *         {@link ArchiveTileStore}
+   */
+  public TileStore getTileStore(File image) {
+    Path target = getTarget(image);
+    if (archive) {
+      return new ArchiveTileStore(new File(target + ".tiles"));
+    }
+    return new TileDirectory(target.toFile(), format);
+  }
+
+  private Path getTarget(File image) {
+    return output.resolve(input.relativize(image.toPath().toAbsolutePath().normalize()));
+  }
+
+  /**
+   * Generates the pyramids of all the images in the input directory and its subdirectories.
+   *
+   * @return the number of pyramids that were generated
+   * @throws IOException if an image cannot be read or a pyramid cannot be written
+   */
+  public int run() throws IOException {
+    Set<String> suffixes = Arrays.stream(ImageIO.getReaderFileSuffixes())
+        .map(suffix -> suffix.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+    List<Path> images;
+    try (Stream<Path> files = Files.walk(input)) {
+      images = files.filter(Files::isRegularFile)
+          .filter(file -> suffixes.contains(getSuffix(file)))
+          .filter(file -> !file.startsWith(output))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+
+    int generated = 0;
+    for (Path image : images) {
+      if (generate(image.toFile())) {
+        generated++;
+      }
+    }
+    return generated;
+  }
+
+  private static String getSuffix(Path file) {
+    String name = file.getFileName().toString();
+    return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Generates the pyramid of an image, unless it is up to date.
+   *
+   * @param image the source image, in the input directory
+   * @return true if the pyramid was generated, false if it was up to date
+   * @throws IOException if the image cannot be read or the pyramid cannot be written
+   */
+  public boolean generate(File image) throws IOException {
+    TiledImageSource source = TiledImageSource.fromFile(image, tileSize);
+    source.setFormat(format);
+    TileStore store = getTileStore(image);
+    if (!force && isUpToDate(store, source)) {
+      return false;
+    }
+
+    if (log != null) {
+      log.printf("%s: %dx%d, %d tiles%n", store, source.getWidth(), source.getHeight(),
+          source.newPyramidBuilder().getTileCount());
+    }
+    File raster = null;
+    if (source.isStreaming()) {
+      // decoding each block by region would decode the image from the top for every block
+      raster = new File(getTarget(image) + ".raster");
+      source.setRasterFile(raster);
+      source.convertRasterFile();
+    }
+    try {
+      if (store instanceof ArchiveTileStore) {
+        try (ArchiveTileStore.Writer writer =
+            ArchiveTileStore.create(((ArchiveTileStore) store).getFile())) {
+          write(source, writer);
+        }
+      } else {
+        ((TileDirectory) store).invalidate();
+        write(source, store);
+      }
+    } finally {
+      if (raster != null) {
+        source.setRasterFile(null);
+        Files.deleteIfExists(raster.toPath());
+      }
+    }
+    return true;
+  }
+
+  private boolean isUpToDate(TileStore store, TiledImageSource source) throws IOException {
+    TileStore.Descriptor descriptor;
+    try {
+      descriptor = store.getDescriptor();
+    } catch (NoSuchFileException e) {
+      return false;
+    }
+    return descriptor != null && descriptor.getLastModified() == source.getLastModified()
+        && descriptor.getPyramid().getTileSize() == tileSize
+        && descriptor.getFormat().equals(format);
+  }
+
+  private static void write(TiledImageSource source, TileStore store) throws IOException {
+    source.newPyramidBuilder().build(store::putTile);
+    store.putOverview(source.renderOverview());
+    store.putDescriptor(new TileStore.Descriptor(source.getPyramid(), source.getFormat(),
+        source.getLastModified()));
+  }
+
+  /**
+   * Runs the generator from the command line. Progress is reported to the standard output, and
+   * invalid arguments or failures are reported to the standard error, with a non-zero exit
+   * status.
+   *
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) {
+    int status = execute(args);
+    if (status != 0) {
+      System.exit(status);
+    }
+  }
+
+  private static int execute(String[] args) {
+    PyramidGenerator generator;
+    try {
+      generator = parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      return 2;
+    }
+    try {
+      int generated = generator.setLog(System.out).run();
+      System.out.println(generated + " pyramids generated");
+      return 0;
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Pyramid generation failed: " + e);
+      return 1;
+    }
+  }
+
+  private static PyramidGenerator parse(String[] args) {
+    String format = "jpeg";
+    int tileSize = TiledImageSource.DEFAULT_TILE_SIZE;
+    boolean archive = false;
+    boolean force = false;
+    int i = 0;
+    try {
+      for (; i < args.length && args[i].startsWith("--"); i++) {
+        String[] option = args[i].split("=", 2);
+        switch (option[0]) {
+          case "--format":
+            format = option.length == 2 ? option[1] : args[++i];
+            break;
+          case "--tile-size":
+            tileSize = Integer.parseInt(option.length == 2 ? option[1] : args[++i]);
+            break;
+          case "--archive":
+            archive = parseFlag(option);
+            break;
+          case "--force":
+            force = parseFlag(option);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option: " + args[i]);
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Missing value of " + args[i - 1]);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid tile size: " + args[i]);
+    }
+    if (args.length - i != 2) {
+      throw new IllegalArgumentException("Expected an input and an output directory");
+    }
+
+    File input = new File(args[i]);
+    if (!input.isDirectory()) {
+      throw new IllegalArgumentException("Not a directory: " + input);
+    }
+    return new PyramidGenerator(input, new File(args[i + 1])).setFormat(format)
+        .setTileSize(tileSize).setArchive(archive).setForce(force);
+  }
+
+  /** Parses a flag, which is either {@code --name} or {@code --name=true|false}. */
+  private static boolean parseFlag(String[] option) {
+    if (option.length == 1 || option[1].equalsIgnoreCase("true")) {
+      return true;
+    } else if (option[1].equalsIgnoreCase("false")) {
+      return false;
+    }
+    throw new IllegalArgumentException("Invalid value of " + option[0] + ": " + option[1]);
+  }
+
+}
@@ -21,17 +21,30 @@ package com.flowingcode.vaadin.addons.zoomist;
 
 import com.vaadin.flow.component.ComponentEvent;
 import com.vaadin.flow.component.DomEvent;
+import com.vaadin.flow.component.EventData;
+import lombok.Getter;
 
 /**
- * Event that is fired when the zoomist instance is ready.
+ * Event that is fired when the zoomist instance is ready. The instance is created once the
+ * initial image has been downloaded and decoded by the browser's asynchronous image decoding,
+ * so that displaying it does not block the page.
  */
 @DomEvent("zoomist-ready")
 public class ReadyEvent extends ComponentEvent<Zoomist> {
 
   private static final long serialVersionUID = 1L;
 
-  public ReadyEvent(Zoomist source, boolean fromClient) {
+  @Getter
+  private final double width;
+  @Getter
+  private final double height;
+
+  public ReadyEvent(Zoomist source, boolean fromClient,
+      @EventData("event.detail.width") double width,
+      @EventData("event.detail.height") double height) {
     super(source, fromClient);
+    this.width = width;
+    this.height = height;
   }
 
 }
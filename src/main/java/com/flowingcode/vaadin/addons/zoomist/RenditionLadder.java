@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist;
+
+import com.vaadin.flow.server.AbstractStreamResource;
+import com.vaadin.flow.server.streams.DownloadHandler;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import lombok.Getter;
+
+/**
+ * Renditions of the same image at different resolutions, e.g. 1x, 2x, 4x and the original. All
+ * the renditions must have the same aspect ratio.
+ *
+ * @see Zoomist#setSrc(RenditionLadder)
+ */
+@SuppressWarnings("serial")
+public class RenditionLadder implements Serializable {
+
+  /**
+   * A rendition of the image.
+   */
+  @Getter
+  public static final class Rendition implements Serializable {
+
+    /** The width of the rendition, in pixels. */
+    private final int width;
+
+    /**
+     * The URL ({@code String}), resource ({@link AbstractStreamResource}) or handler
+     * ({@link DownloadHandler}) of the rendition.
+     */
+    private final Serializable src;
+
+    private Rendition(int width, Serializable src) {
+      if (width <= 0) {
+        throw new IllegalArgumentException("Width must be positive");
+      }
+      this.width = width;
+      this.src = Objects.requireNonNull(src);
+    }
+  }
+
+  private final List<Rendition> renditions = new ArrayList<>();
+
+  /**
+   * Adds a rendition of the image.
+   *
+   * @param width the width of the rendition, in pixels
+   * @param src the URL of the rendition
+   * @return this ladder, for chaining
+   */
+  public RenditionLadder add(int width, String src) {
+    return add(new Rendition(width, src));
+  }
+
+  /**
+   * Adds a rendition of the image.
+   *
+   * @param width the width of the rendition, in pixels
+   * @param src the resource of the rendition
+   * @return this ladder, for chaining
+   */
+  public RenditionLadder add(int width, AbstractStreamResource src) {
+    return add(new Rendition(width, src));
+  }
+
+  /**
+   * Adds a rendition of the image.
+   *
+   * @param width the width of the rendition, in pixels
+   * @param src the handler that serves the rendition
+   * @return this ladder, for chaining
+   */
+  public RenditionLadder add(int width, DownloadHandler src) {
+    return add(new Rendition(width, src));
+  }
+
+  private RenditionLadder add(Rendition rendition) {
+    renditions.add(rendition);
+    renditions.sort(Comparator.comparingInt(Rendition::getWidth));
+    return this;
+  }
+
+  /**
+   * Returns the renditions, from the smallest to the largest one.
+   *
+   * @return an unmodifiable list of renditions
+   */
+  public List<Rendition> getRenditions() {
+    return Collections.unmodifiableList(renditions);
+  }
+
+}
@@ -0,0 +1,146 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist;
+
+import com.vaadin.flow.server.HttpStatusCode;
+import com.vaadin.flow.server.InputStreamFactory;
+import com.vaadin.flow.server.streams.DownloadEvent;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Image source that is downscaled on the server to the size at which it is displayed. The client
+ * initially requests a rendition sized to the container, multiplied by the device pixel ratio, and
+ * climbs a {@linkplain #setLadder(double...) ladder} of larger renditions as the user zooms in,
+ * only requesting the original image when the zoom ratio exceeds the largest rendition.
+ */
+@SuppressWarnings("serial")
+public class ResampledImageSource extends AbstractImageSource {
+
+  /**
+   * Requested widths are rounded up to a multiple of this value, so that clients with slightly
+   * different container sizes share the same rendition.
+   */
+  private static final int WIDTH_STEP = 128;
+
+  private double[] ladder = {1, 2, 4};
+
+  /**
+   * Creates a new resampled source for the specified image.
+   *
+   * @param id a string that uniquely identifies the source image
+   * @param factory the factory of the source image stream
+   */
+  public ResampledImageSource(String id, InputStreamFactory factory) {
+    super(id, factory);
+  }
+
+  /**
+   * Creates a new resampled source for the specified image file.
+   *
+   * @param file the source image file
+   * @return a resampled source for the file
+   */
+  public static ResampledImageSource fromFile(File file) {
+    return new ResampledImageSource(file);
+  }
+
+  private ResampledImageSource(File file) {
+    super(file);
+  }
+
+  /**
+   * Sets the renditions requested by the client, as multiples of the container size in device
+   * pixels. The default ladder is {@code 1, 2, 4}; the original image is always the last step.
+   *
+   * @param factors the factors of the container size, in ascending order
+   * @throws IllegalArgumentException if no factor is given, or the factors are not positive and
+   *         ascending
+   */
+  public void setLadder(double... factors) {
+    if (factors.length == 0) {
+      throw new IllegalArgumentException("The ladder must have at least one step");
+    }
+    for (int i = 0; i < factors.length; i++) {
+      if (factors[i] <= 0 || i > 0 && factors[i] <= factors[i - 1]) {
+        throw new IllegalArgumentException("Ladder factors must be positive and ascending");
+      }
+    }
+    ladder = factors.clone();
+  }
+
+  /**
+   * Returns the renditions requested by the client, as multiples of the container size.
+   *
+   * @return the factors of the container size
+   */
+  public double[] getLadder() {
+    return ladder.clone();
+  }
+
+  /**
+   * Renders a downscaled version of the image. The requested width is rounded up to a multiple of
+   * 128 pixels.
+   *
+   * @param width the requested width, which must be smaller than the width of the image
+   * @return the encoded image
+   * @throws IOException if the source image cannot be read
+   */
+  public byte[] renderWidth(int width) throws IOException {
+    int w = roundWidth(width);
+    int h = Math.max(1, (int) Math.round((double) w * getHeight() / getWidth()));
+    return getRendition(getWidthVariant(), w, 0, 0,
+        () -> render(new Rectangle(0, 0, getWidth(), getHeight()), w, h));
+  }
+
+  private int roundWidth(int width) {
+    return Math.min(getWidth(), (width + WIDTH_STEP - 1) / WIDTH_STEP * WIDTH_STEP);
+  }
+
+  private String getWidthVariant() {
+    return "width." + getFormat();
+  }
+
+  @Override
+  public void handleDownloadRequest(DownloadEvent event) throws IOException {
+    String param = event.getRequest().getParameter("w");
+    if (param == null) {
+      writeOriginal(event);
+      return;
+    }
+
+    int width;
+    try {
+      width = Integer.parseInt(param);
+    } catch (NumberFormatException e) {
+      width = 0;
+    }
+    if (width <= 0) {
+      event.getResponse().sendError(HttpStatusCode.BAD_REQUEST.getCode(), "Invalid width");
+    } else if (width >= getWidth()) {
+      writeOriginal(event);
+    } else {
+      int w = roundWidth(width);
+      write(event, getWidthVariant(), w, 0, 0, () -> renderWidth(w));
+    }
+  }
+
+}
@@ -22,7 +22,9 @@ package com.flowingcode.vaadin.addons.zoomist;
 import com.vaadin.flow.component.ComponentEvent;
 import com.vaadin.flow.component.DebounceSettings;
 import com.vaadin.flow.component.DomEvent;
+import com.vaadin.flow.component.EventData;
 import com.vaadin.flow.dom.DebouncePhase;
+import lombok.Getter;
 
 /**
  * Event that is fired when zoomist is resizing.
@@ -33,8 +35,17 @@ public class ResizeEvent extends ComponentEvent<Zoomist> {
 
   private static final long serialVersionUID = 1L;
 
-  public ResizeEvent(Zoomist source, boolean fromClient) {
+  @Getter
+  private final double width;
+  @Getter
+  private final double height;
+
+  public ResizeEvent(Zoomist source, boolean fromClient,
+      @EventData("event.detail.width") double width,
+      @EventData("event.detail.height") double height) {
     super(source, fromClient);
+    this.width = width;
+    this.height = height;
   }
 
 }
@@ -34,11 +34,19 @@ public class SlideEndEvent extends ComponentEvent<Zoomist> {
 
   @Getter
   private final double value;
+  @Getter
+  private final double offsetX;
+  @Getter
+  private final double offsetY;
 
   public SlideEndEvent(Zoomist source, boolean fromClient,
-      @EventData("event.detail.value") double value) {
+      @EventData("event.detail.value") double value,
+      @EventData("event.detail.offsetX") double offsetX,
+      @EventData("event.detail.offsetY") double offsetY) {
     super(source, fromClient);
     this.value = value;
+    this.offsetX = offsetX;
+    this.offsetY = offsetY;
   }
 
 }
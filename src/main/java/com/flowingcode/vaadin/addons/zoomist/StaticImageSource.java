@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist;
+
+import com.vaadin.flow.server.InputStreamFactory;
+import com.vaadin.flow.server.streams.DownloadEvent;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Image source that serves the original image with HTTP caching support. Responses carry a strong
+ * {@code ETag}, {@code Last-Modified} (when known) and {@code Cache-Control} headers, conditional
+ * requests are answered with {@code 304 Not Modified}, and byte range requests are supported for
+ * file sources.
+ */
+@SuppressWarnings("serial")
+public class StaticImageSource extends AbstractImageSource {
+
+  /**
+   * Creates a new source for the specified image.
+   *
+   * @param id a string that uniquely identifies the content of the source image
+   * @param factory the factory of the source image stream
+   */
+  public StaticImageSource(String id, InputStreamFactory factory) {
+    super(id, factory);
+  }
+
+  private StaticImageSource(File file) {
+    super(file);
+  }
+
+  /**
+   * Creates a new source for the specified image file.
+   *
+   * @param file the source image file
+   * @return a source for the file
+   */
+  public static StaticImageSource fromFile(File file) {
+    return new StaticImageSource(file);
+  }
+
+  @Override
+  public void handleDownloadRequest(DownloadEvent event) throws IOException {
+    writeOriginal(event);
+  }
+
+}
@@ -0,0 +1,312 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist;
+
+import com.flowingcode.vaadin.addons.zoomist.image.PyramidBuilder;
+import com.flowingcode.vaadin.addons.zoomist.image.RenditionCache;
+import com.flowingcode.vaadin.addons.zoomist.image.RenditionKey;
+import com.flowingcode.vaadin.addons.zoomist.image.SingleFlight;
+import com.flowingcode.vaadin.addons.zoomist.image.TilePyramid;
+import com.flowingcode.vaadin.addons.zoomist.image.TileStore;
+import com.vaadin.flow.server.HttpStatusCode;
+import com.vaadin.flow.server.InputStreamFactory;
+import com.vaadin.flow.server.VaadinRequest;
+import com.vaadin.flow.server.streams.DownloadEvent;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import lombok.Getter;
+
+/**
+ * Image source that serves a multi-resolution tile pyramid instead of the whole original image.
+ * The client displays a low resolution overview of the image, and only requests the tiles that
+ * intersect the viewport at the current zoom ratio.
+ * <p>
+ * Tiles are generated on demand from the original image, unless they are found in the
+ * {@linkplain #setTileStore(TileStore) tile store}, e.g. because they have been generated ahead
+ * of time with the {@link PyramidGenerator}.
+ * </p>
+ */
+@SuppressWarnings("serial")
+public class TiledImageSource extends AbstractImageSource {
+
+  /** Default width and height of a tile. */
+  public static final int DEFAULT_TILE_SIZE = 256;
+
+  /** Maximum width and height of the overview image. */
+  private static final int OVERVIEW_SIZE = 1024;
+
+  /** Coalesces concurrent renderings of tiles that are missing from writable tile stores. */
+  private static final SingleFlight<RenditionKey, byte[]> STORE_LOADS = new SingleFlight<>();
+
+  @Getter
+  private final int tileSize;
+
+  private TilePyramid pyramid;
+
+  @Getter
+  private TileStore tileStore;
+
+  /**
+   * Creates a new tiled source for the specified image, with the default tile size.
+   *
+   * @param id a string that uniquely identifies the source image
+   * @param factory the factory of the source image stream
+   */
+  public TiledImageSource(String id, InputStreamFactory factory) {
+    this(id, factory, DEFAULT_TILE_SIZE);
+  }
+
+  /**
+   * Creates a new tiled source for the specified image.
+   *
+   * @param id a string that uniquely identifies the source image
+   * @param factory the factory of the source image stream
+   * @param tileSize the width and height of each tile
+   */
+  public TiledImageSource(String id, InputStreamFactory factory, int tileSize) {
+    super(id, factory);
+    if (tileSize <= 0) {
+      throw new IllegalArgumentException("Tile size must be positive");
+    }
+    this.tileSize = tileSize;
+  }
+
+  private TiledImageSource(File file, int tileSize) {
+    super(file);
+    if (tileSize <= 0) {
+      throw new IllegalArgumentException("Tile size must be positive");
+    }
+    this.tileSize = tileSize;
+  }
+
+  /**
+   * Creates a new tiled source for the specified image file, with the default tile size.
+   *
+   * @param file the source image file
+   * @return a tiled source for the file
+   */
+  public static TiledImageSource fromFile(File file) {
+    return new TiledImageSource(file, DEFAULT_TILE_SIZE);
+  }
+
+  /**
+   * Creates a new tiled source for the specified image file.
+   *
+   * @param file the source image file
+   * @param tileSize the width and height of each tile
+   * @return a tiled source for the file
+   */
+  public static TiledImageSource fromFile(File file, int tileSize) {
+    return new TiledImageSource(file, tileSize);
+  }
+
+  /**
+   * Sets the store where the tiles and overview image of this source are kept, instead of the
+   * shared rendition cache. Renditions that are found in the store are served as they are. The
+   * remaining ones are generated on demand and, unless the store is read-only, added to it.
+   *
+   * @param tileStore the tile store, or {@code null} for keeping the renditions in the shared
+   *        rendition cache
+   * @throws IllegalArgumentException if the store is read-only and has no descriptor, or its
+   *         pyramid does not match the geometry, format or modification time of this source
+   */
+  public void setTileStore(TileStore tileStore) {
+    if (tileStore != null) {
+      try {
+        TileStore.Descriptor descriptor = tileStore.getDescriptor();
+        if (descriptor == null && tileStore.isReadOnly()) {
+          throw new IllegalArgumentException("Incomplete tile store: " + tileStore);
+        } else if (descriptor == null) {
+          tileStore.putDescriptor(
+              new TileStore.Descriptor(getPyramid(), getFormat(), getLastModified()));
+        } else {
+          checkDescriptor(tileStore, descriptor);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    this.tileStore = tileStore;
+  }
+
+  private void checkDescriptor(TileStore tileStore, TileStore.Descriptor descriptor) {
+    TilePyramid stored = descriptor.getPyramid();
+    if (stored.getWidth() != getWidth() || stored.getHeight() != getHeight()
+        || stored.getTileSize() != tileSize || !descriptor.getFormat().equals(getFormat())) {
+      throw new IllegalArgumentException("Tile store does not match the source: " + tileStore);
+    }
+    if (descriptor.getLastModified() != 0 && getLastModified() != 0
+        && descriptor.getLastModified() != getLastModified()) {
+      throw new IllegalArgumentException("Tile store is out of date: " + tileStore);
+    }
+  }
+
+  /**
+   * Returns the geometry of the tile pyramid.
+   *
+   * @return the tile pyramid
+   */
+  public synchronized TilePyramid getPyramid() {
+    if (pyramid == null) {
+      pyramid = new TilePyramid(getWidth(), getHeight(), tileSize);
+    }
+    return pyramid;
+  }
+
+  /**
+   * Creates a builder that generates every tile of the pyramid in parallel, e.g. to store them
+   * ahead of time.
+   *
+   * @return a new pyramid builder
+   */
+  public PyramidBuilder newPyramidBuilder() {
+    return new PyramidBuilder(getPyramid(), this::read, getFormat());
+  }
+
+  /**
+   * Renders a tile of the pyramid.
+   *
+   * @param level the pyramid level
+   * @param column the tile column
+   * @param row the tile row
+   * @return the encoded tile
+   * @throws IOException if the source image cannot be read
+   */
+  public byte[] renderTile(int level, int column, int row) throws IOException {
+    TilePyramid pyramid = getPyramid();
+    Rectangle bounds = pyramid.getTileBounds(level, column, row);
+    RenditionCache.Loader loader =
+        () -> render(pyramid.getSourceRegion(level, column, row), bounds.width, bounds.height);
+
+    TileStore store = tileStore;
+    if (store == null) {
+      return getRendition(getTileVariant(), level, column, row, loader);
+    }
+    byte[] data = store.getTile(level, column, row);
+    if (data != null) {
+      return data;
+    } else if (store.isReadOnly()) {
+      return getRendition(getTileVariant(), level, column, row, loader);
+    }
+    RenditionKey key = new RenditionKey(getId(), getTileVariant(), level, column, row);
+    return STORE_LOADS.execute(key, () -> {
+      byte[] tile = loader.load();
+      store.putTile(level, column, row, tile);
+      return tile;
+    });
+  }
+
+  /**
+   * Returns the content of a tile response. Stored tiles are sent from the buffer returned by the
+   * store, which is a view of the mapped file for tile archives.
+   */
+  private HttpCaching.Content loadTile(int level, int column, int row) throws IOException {
+    TileStore store = tileStore;
+    if (store != null) {
+      ByteBuffer data = store.getTileBuffer(level, column, row);
+      if (data != null) {
+        return HttpCaching.of(data);
+      }
+    }
+    return HttpCaching.of(renderTile(level, column, row));
+  }
+
+  /**
+   * Renders the overview image, i.e. the whole image at the first level that fits in a square of
+   * 1024 pixels.
+   *
+   * @return the encoded overview image
+   * @throws IOException if the source image cannot be read
+   */
+  public byte[] renderOverview() throws IOException {
+    TileStore store = tileStore;
+    if (store != null) {
+      byte[] data = store.getOverview();
+      if (data != null) {
+        return data;
+      }
+    }
+    TilePyramid pyramid = getPyramid();
+    int level = pyramid.getLevelFittingIn(OVERVIEW_SIZE);
+    return getRendition(getOverviewVariant(), level, 0, 0, () -> {
+      byte[] data = render(new Rectangle(0, 0, pyramid.getWidth(), pyramid.getHeight()),
+          pyramid.getLevelWidth(level), pyramid.getLevelHeight(level));
+      if (store != null && !store.isReadOnly()) {
+        store.putOverview(data);
+      }
+      return data;
+    });
+  }
+
+  @Override
+  protected boolean isRenditionCheap(String variant, int level, int x, int y) {
+    TileStore store = tileStore;
+    if (store != null) {
+      try {
+        if (variant.equals(getTileVariant()) ? store.containsTile(level, x, y)
+            : store.containsOverview()) {
+          return true;
+        }
+      } catch (IOException e) {
+        return false;
+      }
+    }
+    return super.isRenditionCheap(variant, level, x, y);
+  }
+
+  private String getTileVariant() {
+    return "tile-" + tileSize + "." + getFormat();
+  }
+
+  private String getOverviewVariant() {
+    return "overview." + getFormat();
+  }
+
+  @Override
+  public void handleDownloadRequest(DownloadEvent event) throws IOException {
+    VaadinRequest request = event.getRequest();
+    if (request.getParameter("level") == null) {
+      int level = getPyramid().getLevelFittingIn(OVERVIEW_SIZE);
+      write(event, getOverviewVariant(), level, 0, 0, this::renderOverview);
+    } else {
+      int level;
+      int column;
+      int row;
+      try {
+        level = Integer.parseInt(request.getParameter("level"));
+        column = Integer.parseInt(request.getParameter("x"));
+        row = Integer.parseInt(request.getParameter("y"));
+      } catch (NumberFormatException e) {
+        event.getResponse().sendError(HttpStatusCode.BAD_REQUEST.getCode(), "Invalid tile");
+        return;
+      }
+      if (!getPyramid().contains(level, column, row)) {
+        event.getResponse().sendError(HttpStatusCode.NOT_FOUND.getCode(), "No such tile");
+        return;
+      }
+      writeContent(event, getTileVariant(), level, column, row,
+          () -> loadTile(level, column, row));
+    }
+  }
+
+}
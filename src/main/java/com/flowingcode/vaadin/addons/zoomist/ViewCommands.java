@@ -0,0 +1,180 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Commands that change the view of a {@link Zoomist} component. All the commands issued during a
+ * server round-trip are sent to the client in a single call, after discarding those that are
+ * immediately superseded by a later command of the same kind (e.g. of several consecutive
+ * {@link #moveTo(double, double)} commands, only the last one matters). Commands of different
+ * kinds are never reordered or merged, since the result of a move depends on the zoom ratio.
+ *
+ * @see Zoomist#batch(com.vaadin.flow.function.SerializableConsumer)
+ */
+@SuppressWarnings("serial")
+public final class ViewCommands implements Serializable {
+
+  private static final String ZOOM = "zoom";
+  private static final String ZOOM_TO = "zoomTo";
+  private static final String MOVE = "move";
+  private static final String MOVE_TO = "moveTo";
+  private static final String SLIDE_TO = "slideTo";
+  private static final String RESET = "reset";
+
+  private static final class Command implements Serializable {
+    private final String name;
+    private final double[] args;
+
+    Command(String name, double... args) {
+      this.name = name;
+      this.args = args;
+    }
+  }
+
+  private final List<Command> commands = new ArrayList<>();
+
+  private final ViewState viewState;
+
+  ViewCommands(ViewState viewState) {
+    this.viewState = viewState;
+  }
+
+  /**
+   * Zooms the image with a relative ratio, e.g. {@code 0.1} zooms in by 10%.
+   *
+   * @param ratio the ratio of the zooming
+   * @return this object, for chaining
+   */
+  public ViewCommands zoom(double ratio) {
+    commands.add(new Command(ZOOM, ratio));
+    viewState.setRatio(viewState.getRatio() * (1 + ratio));
+    return this;
+  }
+
+  /**
+   * Zooms the image to an absolute ratio. Zoom and slide commands issued right before it are
+   * discarded.
+   *
+   * @param ratio the zoom ratio
+   * @return this object, for chaining
+   */
+  public ViewCommands zoomTo(double ratio) {
+    discardLast(ZOOM, ZOOM_TO, SLIDE_TO);
+    commands.add(new Command(ZOOM_TO, ratio));
+    viewState.setRatio(ratio);
+    return this;
+  }
+
+  /**
+   * Moves the image with a relative position.
+   *
+   * @param x x position
+   * @param y y position
+   * @return this object, for chaining
+   */
+  public ViewCommands move(double x, double y) {
+    commands.add(new Command(MOVE, x, y));
+    viewState.setTranslate(viewState.getTranslateX() + x, viewState.getTranslateY() + y);
+    return this;
+  }
+
+  /**
+   * Moves the image to an absolute position. Move commands issued right before it are discarded.
+   *
+   * @param x x position
+   * @param y y position
+   * @return this object, for chaining
+   */
+  public ViewCommands moveTo(double x, double y) {
+    discardLast(MOVE, MOVE_TO);
+    commands.add(new Command(MOVE_TO, x, y));
+    viewState.setTranslate(x, y);
+    return this;
+  }
+
+  /**
+   * Moves the slider to the given value. Zoom and slide commands issued right before it are
+   * discarded.
+   *
+   * @param value the slider value
+   * @return this object, for chaining
+   */
+  public ViewCommands slideTo(double value) {
+    discardLast(ZOOM, ZOOM_TO, SLIDE_TO);
+    commands.add(new Command(SLIDE_TO, value));
+    viewState.setSliderValue(value);
+    return this;
+  }
+
+  /**
+   * Resets the image to initial state. All previous commands are discarded.
+   *
+   * @return this object, for chaining
+   */
+  public ViewCommands reset() {
+    commands.clear();
+    commands.add(new Command(RESET));
+    viewState.reset();
+    return this;
+  }
+
+  /** Discards the trailing commands with the given names. */
+  private void discardLast(String... names) {
+    List<String> kinds = List.of(names);
+    while (!commands.isEmpty() && kinds.contains(commands.get(commands.size() - 1).name)) {
+      commands.remove(commands.size() - 1);
+    }
+  }
+
+  boolean isEmpty() {
+    return commands.isEmpty();
+  }
+
+  /**
+   * Returns the commands as a flat list of arguments: the name of each command followed by its
+   * arguments.
+   */
+  Serializable[] toArguments() {
+    List<Serializable> arguments = new ArrayList<>();
+    for (Command command : commands) {
+      arguments.add(command.name);
+      for (double arg : command.args) {
+        arguments.add(arg);
+      }
+    }
+    return arguments.toArray(new Serializable[0]);
+  }
+
+  @Override
+  public String toString() {
+    StringJoiner joiner = new StringJoiner(", ", "ViewCommands[", "]");
+    for (Command command : commands) {
+      joiner.add(command.name + Arrays.toString(command.args));
+    }
+    return joiner.toString();
+  }
+
+}
@@ -0,0 +1,82 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist;
+
+import java.io.Serializable;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Server-side mirror of the current view of a {@link Zoomist} component. Once it has been
+ * {@linkplain Zoomist#getViewState() requested}, it is kept up to date from the
+ * {@link ZoomEvent}, {@link DragEndEvent}, {@link SlideEndEvent}, {@link ReadyEvent} and
+ * {@link ResizeEvent} sent by the client, so that it can be queried without a round-trip. The
+ * offset is updated by the events that move the image: dragging, zooming and sliding.
+ * <p>
+ * Since client events are debounced, the state reflects the view at the end of the last gesture.
+ * </p>
+ */
+@Getter
+@Setter(AccessLevel.PACKAGE)
+public class ViewState implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The current zoom ratio of the image. */
+  private double ratio = 1;
+
+  /** The horizontal offset of the image. */
+  private double translateX;
+
+  /** The vertical offset of the image. */
+  private double translateY;
+
+  /** The current value of the slider. */
+  private double sliderValue;
+
+  /** The width of the container. */
+  private double containerWidth;
+
+  /** The height of the container. */
+  private double containerHeight;
+
+  void setTranslate(double x, double y) {
+    translateX = x;
+    translateY = y;
+  }
+
+  void setContainerSize(double width, double height) {
+    containerWidth = width;
+    containerHeight = height;
+  }
+
+  void reset() {
+    ratio = 1;
+    setTranslate(0, 0);
+  }
+
+  @Override
+  public String toString() {
+    return "ViewState[ratio=" + ratio + ", translate=(" + translateX + ", " + translateY
+        + "), container=" + containerWidth + "x" + containerHeight + "]";
+  }
+
+}
@@ -37,11 +37,19 @@ public class ZoomEvent extends ComponentEvent<Zoomist> {
 
   @Getter
   private final double ratio;
+  @Getter
+  private final double offsetX;
+  @Getter
+  private final double offsetY;
 
   public ZoomEvent(Zoomist source, boolean fromClient,
-      @EventData("event.detail.ratio") double ratio) {
+      @EventData("event.detail.ratio") double ratio,
+      @EventData("event.detail.offsetX") double offsetX,
+      @EventData("event.detail.offsetY") double offsetY) {
     super(source, fromClient);
     this.ratio = ratio;
+    this.offsetX = offsetX;
+    this.offsetY = offsetY;
   }
 
 }
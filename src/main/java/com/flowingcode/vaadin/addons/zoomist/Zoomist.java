@@ -19,19 +19,27 @@
  */
 package com.flowingcode.vaadin.addons.zoomist;
 
+import com.flowingcode.vaadin.addons.zoomist.image.TilePyramid;
 import com.flowingcode.vaadin.jsonmigration.JsonMigration;
 import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.ComponentEvent;
 import com.vaadin.flow.component.ComponentEventListener;
 import com.vaadin.flow.component.Tag;
 import com.vaadin.flow.component.dependency.JsModule;
 import com.vaadin.flow.component.dependency.NpmPackage;
+import com.vaadin.flow.dom.DomListenerRegistration;
 import com.vaadin.flow.function.SerializableConsumer;
 import com.vaadin.flow.server.AbstractStreamResource;
 import com.vaadin.flow.server.StreamResourceRegistry;
 import com.vaadin.flow.server.streams.DownloadHandler;
 import com.vaadin.flow.shared.Registration;
 import elemental.json.Json;
+import elemental.json.JsonArray;
 import elemental.json.JsonObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import lombok.Getter;
@@ -78,6 +86,28 @@ public class Zoomist extends Component {
     }
   }
 
+  private AbstractImageSource imageSource;
+
+  private boolean progressive;
+
+  private final ViewState viewState = new ViewState();
+
+  private ViewCommands pendingCommands;
+
+  private ZoomistOptions options = ZoomistOptions.defaults();
+
+  private List<?> gallery = List.of();
+
+  private int galleryIndex = -1;
+
+  private int renditionCount;
+
+  private final Map<Class<?>, EventPolicy> eventPolicies = new HashMap<>();
+
+  private final Map<Class<?>, List<DomListenerRegistration>> domRegistrations = new HashMap<>();
+
+  private boolean viewStateTracked;
+
   /**
    * Creates a new instance of Zoomist for the specified source url.
    * 
@@ -105,6 +135,33 @@ public class Zoomist extends Component {
     setSrc(src);
   }
 
+  /**
+   * Creates a new instance of Zoomist for the specified source image.
+   *
+   * @param src the source image
+   */
+  public Zoomist(AbstractImageSource src) {
+    setSrc(src);
+  }
+
+  /**
+   * Creates a new instance of Zoomist for the specified tiled source image.
+   *
+   * @param src the tiled source image
+   */
+  public Zoomist(TiledImageSource src) {
+    setSrc(src);
+  }
+
+  /**
+   * Creates a new instance of Zoomist for the specified resampled source image.
+   *
+   * @param src the resampled source image
+   */
+  public Zoomist(ResampledImageSource src) {
+    setSrc(src);
+  }
+
   /**
    * Sets the source url of image.
    *
@@ -121,6 +178,28 @@ public class Zoomist extends Component {
    */
   public void setSrc(AbstractStreamResource src) {
     getElement().setAttribute("src", src);
+    clearGallery();
+    clearSourceMode();
+  }
+
+  /**
+   * Sets a source image that is served by the add-on, with HTTP caching support.
+   *
+   * @param src the source image
+   */
+  public void setSrc(AbstractImageSource src) {
+    setSrc((DownloadHandler) src);
+    updateSourceMode(src);
+  }
+
+  /**
+   * Sets a tiled source image. The client displays a low resolution overview of the image and
+   * only requests the tiles that are visible at the current zoom ratio.
+   *
+   * @param src the tiled source image
+   */
+  public void setSrc(TiledImageSource src) {
+    setSrc((AbstractImageSource) src);
   }
 
   /**
@@ -130,6 +209,431 @@ public class Zoomist extends Component {
    */
   public void setSrc(String src) {
     getElement().setProperty("src", src);
+    clearGallery();
+    clearSourceMode();
+  }
+
+  /**
+   * Sets a source image that is downscaled on the server. The client initially loads a rendition
+   * sized to the container (multiplied by the device pixel ratio), and climbs the
+   * {@linkplain ResampledImageSource#setLadder(double...) ladder} of larger renditions ({@code 1,
+   * 2, 4} times that size by default) as the user zooms past the resolution of the loaded one,
+   * ending with the original image.
+   *
+   * @param src the resampled source image
+   */
+  public void setSrc(ResampledImageSource src) {
+    setSrc((AbstractImageSource) src);
+  }
+
+  private void updateSourceMode(AbstractImageSource src) {
+    imageSource = src;
+    updatePlaceholder();
+    if (src instanceof TiledImageSource) {
+      TilePyramid pyramid = ((TiledImageSource) src).getPyramid();
+      JsonObject tiles = Json.createObject();
+      tiles.put("width", pyramid.getWidth());
+      tiles.put("height", pyramid.getHeight());
+      tiles.put("tileSize", pyramid.getTileSize());
+      tiles.put("levels", pyramid.getLevels());
+      getElement().setPropertyJson("tiles", tiles);
+    } else if (src instanceof ResampledImageSource) {
+      getElement().setPropertyJson("resample", getResampleJson((ResampledImageSource) src));
+    }
+  }
+
+  private static JsonObject getResampleJson(ResampledImageSource src) {
+    JsonObject resample = Json.createObject();
+    resample.put("width", src.getWidth());
+    resample.put("height", src.getHeight());
+    JsonArray ladder = Json.createArray();
+    double[] factors = src.getLadder();
+    for (int i = 0; i < factors.length; i++) {
+      ladder.set(i, factors[i]);
+    }
+    resample.put("ladder", ladder);
+    return resample;
+  }
+
+  /**
+   * Sets a list of images that are displayed one at a time, reusing the same client-side Zoomist
+   * instance. The first image is displayed immediately; the others are displayed with
+   * {@link #next()}, {@link #previous()} and {@link #show(int)}. The neighbours of the displayed
+   * image are downloaded and decoded in advance, so that switching images is instant.
+   * <p>
+   * The sources can be URLs ({@code String}), {@link AbstractStreamResource},
+   * {@link DownloadHandler} or {@link AbstractImageSource} instances. Setting a source with any
+   * of the {@code setSrc} methods leaves the gallery.
+   * </p>
+   *
+   * @param sources the images of the gallery
+   * @throws IllegalArgumentException if a source is not of a supported type
+   * @see #setPreserveView(boolean)
+   */
+  public void setGallery(List<?> sources) {
+    for (Object source : sources) {
+      if (!(source instanceof String || source instanceof AbstractStreamResource
+          || source instanceof DownloadHandler)) {
+        throw new IllegalArgumentException("Unsupported image source: " + source);
+      }
+    }
+    clearGallery();
+    gallery = List.copyOf(sources);
+    JsonArray items = Json.createArray();
+    for (int i = 0; i < gallery.size(); i++) {
+      // every image is registered as an attribute, so that its URL is stable and can be prefetched
+      Object source = gallery.get(i);
+      String name = "gallery-" + i;
+      if (source instanceof String) {
+        getElement().setAttribute(name, (String) source);
+      } else if (source instanceof AbstractStreamResource) {
+        getElement().setAttribute(name, (AbstractStreamResource) source);
+      } else {
+        getElement().setAttribute(name, new StreamResourceRegistry.ElementStreamResource(
+            (DownloadHandler) source, getElement()));
+      }
+      JsonObject item = Json.createObject();
+      if (source instanceof ResampledImageSource) {
+        item.put("resample", getResampleJson((ResampledImageSource) source));
+      }
+      items.set(i, item);
+    }
+    getElement().setPropertyJson("gallery", items);
+    if (!gallery.isEmpty()) {
+      show(0);
+    }
+  }
+
+  private void clearGallery() {
+    for (int i = 0; i < gallery.size(); i++) {
+      getElement().removeAttribute("gallery-" + i);
+    }
+    gallery = List.of();
+    galleryIndex = -1;
+    getElement().removeProperty("gallery");
+    getElement().removeProperty("galleryIndex");
+  }
+
+  /**
+   * Displays an image of the {@linkplain #setGallery(List) gallery}.
+   *
+   * @param index the index of the image
+   * @throws IndexOutOfBoundsException if the index is out of range
+   */
+  public void show(int index) {
+    Object source = gallery.get(Objects.checkIndex(index, gallery.size()));
+    clearSourceMode();
+    if (source instanceof AbstractImageSource) {
+      updateSourceMode((AbstractImageSource) source);
+    }
+    if (!isPreserveView()) {
+      viewState.reset();
+    }
+    galleryIndex = index;
+    getElement().setProperty("galleryIndex", index);
+  }
+
+  /**
+   * Displays the next image of the {@linkplain #setGallery(List) gallery}. Does nothing if the
+   * last image is displayed.
+   */
+  public void next() {
+    if (galleryIndex + 1 < gallery.size()) {
+      show(galleryIndex + 1);
+    }
+  }
+
+  /**
+   * Displays the previous image of the {@linkplain #setGallery(List) gallery}. Does nothing if
+   * the first image is displayed.
+   */
+  public void previous() {
+    if (galleryIndex > 0) {
+      show(galleryIndex - 1);
+    }
+  }
+
+  /**
+   * Returns the index of the displayed image of the {@linkplain #setGallery(List) gallery}.
+   *
+   * @return the index of the displayed image, or -1 if there is no gallery
+   */
+  public int getGalleryIndex() {
+    return galleryIndex;
+  }
+
+  /**
+   * Sets whether the current zoom and position are kept when a different image is displayed. By
+   * default, the view is reset.
+   *
+   * @param preserveView if true, the view is kept when the image changes
+   *                     if false, the view is reset when the image changes
+   */
+  public void setPreserveView(boolean preserveView) {
+    getElement().setProperty("preserveView", preserveView);
+  }
+
+  /**
+   * Returns whether the current zoom and position are kept when a different image is displayed.
+   *
+   * @return true, the view is kept when the image changes
+   *         false, the view is reset when the image changes
+   */
+  public boolean isPreserveView() {
+    return getElement().getProperty("preserveView", false);
+  }
+
+  /**
+   * Sets whether a lower resolution copy of the image is displayed while the user drags, pinches
+   * or slides. The copy is rendered on the client at the size of the container, and the full
+   * resolution image is restored when the interaction ends. This avoids resampling a large image
+   * on every frame.
+   *
+   * @param lowQualityInteraction if true, a lower resolution image is displayed during
+   *                              interactions
+   */
+  public void setLowQualityInteraction(boolean lowQualityInteraction) {
+    getElement().setProperty("lowQualityInteraction", lowQualityInteraction);
+  }
+
+  /**
+   * Returns whether a lower resolution copy of the image is displayed while the user drags,
+   * pinches or slides.
+   *
+   * @return true, a lower resolution image is displayed during interactions
+   *         false, the full resolution image is always displayed
+   */
+  public boolean isLowQualityInteraction() {
+    return getElement().getProperty("lowQualityInteraction", false);
+  }
+
+  /**
+   * Sets the maximum number of speculative requests that the client sends at a time. While the
+   * user drags or zooms, the client extrapolates the motion of the image and prefetches the tiles
+   * and renditions that will be displayed next. The server serves speculative requests only when
+   * it is not busy with visible ones. The default budget is 4.
+   *
+   * @param budget the maximum number of speculative requests in progress, or 0 to disable
+   *               prefetching
+   */
+  public void setPrefetchBudget(int budget) {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Budget must not be negative");
+    }
+    getElement().setProperty("prefetchBudget", budget);
+  }
+
+  /**
+   * Returns the maximum number of speculative requests that the client sends at a time.
+   *
+   * @return the prefetch budget
+   */
+  public int getPrefetchBudget() {
+    return getElement().getProperty("prefetchBudget", 4);
+  }
+
+  /**
+   * Sets a ladder of renditions of the same image. The client initially loads the smallest
+   * rendition that covers the container, and switches to larger ones as the zoom ratio multiplied
+   * by the device pixel ratio exceeds the resolution of the loaded one, keeping the current
+   * transform.
+   *
+   * @param renditions the renditions of the image
+   */
+  public void setSrc(RenditionLadder renditions) {
+    List<RenditionLadder.Rendition> list = renditions.getRenditions();
+    if (list.isEmpty()) {
+      throw new IllegalArgumentException("The ladder must have at least one rendition");
+    }
+    clearGallery();
+    clearSourceMode();
+    JsonArray json = Json.createArray();
+    for (int i = 0; i < list.size(); i++) {
+      RenditionLadder.Rendition rendition = list.get(i);
+      String name = "rendition-" + i;
+      if (rendition.getSrc() instanceof String) {
+        getElement().setAttribute(name, (String) rendition.getSrc());
+      } else if (rendition.getSrc() instanceof AbstractStreamResource) {
+        getElement().setAttribute(name, (AbstractStreamResource) rendition.getSrc());
+      } else {
+        getElement().setAttribute(name, new StreamResourceRegistry.ElementStreamResource(
+            (DownloadHandler) rendition.getSrc(), getElement()));
+      }
+      JsonObject item = Json.createObject();
+      item.put("width", rendition.getWidth());
+      json.set(i, item);
+    }
+    renditionCount = list.size();
+    getElement().removeAttribute("src");
+    getElement().removeProperty("src");
+    getElement().setPropertyJson("renditions", json);
+  }
+
+  private void clearSourceMode() {
+    imageSource = null;
+    for (int i = 0; i < renditionCount; i++) {
+      getElement().removeAttribute("rendition-" + i);
+    }
+    renditionCount = 0;
+    getElement().removeProperty("renditions");
+    getElement().removeProperty("tiles");
+    getElement().removeProperty("resample");
+    getElement().removeAttribute("placeholder");
+  }
+
+  private void updatePlaceholder() {
+    AbstractImageSource source = imageSource;
+    if (!progressive || source == null) {
+      getElement().removeAttribute("placeholder");
+      return;
+    }
+    String dataUrl = source.getCachedPlaceholderDataUrl();
+    if (dataUrl != null) {
+      getElement().setAttribute("placeholder", dataUrl);
+    } else {
+      // generated when the client requests it, instead of while the session is locked
+      DownloadHandler handler = source::writePlaceholder;
+      getElement().setAttribute("placeholder",
+          new StreamResourceRegistry.ElementStreamResource(handler, getElement()));
+    }
+  }
+
+  /**
+   * Sets whether the image is loaded progressively. In progressive mode, a tiny placeholder of
+   * the {@linkplain AbstractImageSource image source} is embedded in the page and displayed
+   * immediately, then replaced by the actual image once it has been downloaded and decoded,
+   * without resetting the current zoom and position. Placeholders are generated on the server and
+   * cached. Cached placeholders are embedded in the page, and the others are downloaded by the
+   * client, so that they are never generated while the session is locked.
+   *
+   * @param progressive if true, a placeholder is displayed while the image is loading
+   */
+  public void setProgressive(boolean progressive) {
+    this.progressive = progressive;
+    updatePlaceholder();
+  }
+
+  /**
+   * Returns whether the image is loaded progressively.
+   *
+   * @return true, a placeholder is displayed while the image is loading
+   *         false, the image is displayed once it has been loaded
+   */
+  public boolean isProgressive() {
+    return progressive;
+  }
+
+  /**
+   * Sets whether the client-side Zoomist instance is kept alive while the component is detached.
+   * By default, the instance is destroyed when the component is detached and created again when
+   * it is reattached. Pooled instances are reused instead, up to a small number of detached
+   * components per page; the least recently detached ones are destroyed first.
+   *
+   * @param pooled if true, the client-side instance is reused when the component is reattached
+   */
+  public void setPooled(boolean pooled) {
+    getElement().setProperty("pooled", pooled);
+  }
+
+  /**
+   * Returns whether the client-side Zoomist instance is kept alive while the component is
+   * detached.
+   *
+   * @return true, the client-side instance is reused when the component is reattached
+   *         false, the client-side instance is destroyed when the component is detached
+   */
+  public boolean isPooled() {
+    return getElement().getProperty("pooled", false);
+  }
+
+  /**
+   * Sets whether the component is initialized lazily. In lazy mode, the image is not downloaded
+   * and the client-side Zoomist instance is not created until the component approaches the
+   * viewport. Turning lazy mode off creates the instance right away, also if the component is
+   * already attached.
+   *
+   * @param lazy if true, the component is initialized when it approaches the viewport
+   * @see #setLazyMargin(String)
+   * @see #setReleaseMargin(String)
+   */
+  public void setLazy(boolean lazy) {
+    getElement().setProperty("lazy", lazy);
+  }
+
+  /**
+   * Returns whether the component is initialized lazily.
+   *
+   * @return true, the component is initialized when it approaches the viewport
+   *         false, the component is initialized when it is attached
+   */
+  public boolean isLazy() {
+    return getElement().getProperty("lazy", false);
+  }
+
+  /**
+   * Sets how close to the viewport a lazy component must be in order to be initialized, as a
+   * CSS margin (e.g. {@code "200px"}, which is the default).
+   *
+   * @param margin the margin around the viewport
+   */
+  public void setLazyMargin(String margin) {
+    getElement().setProperty("lazyMargin", margin);
+  }
+
+  /**
+   * Returns how close to the viewport a lazy component must be in order to be initialized.
+   *
+   * @return the margin around the viewport, or {@code null} if the default margin is used
+   */
+  public String getLazyMargin() {
+    return getElement().getProperty("lazyMargin");
+  }
+
+  /**
+   * Sets how far from the viewport a lazy component must be in order to release its client-side
+   * Zoomist instance, as a CSS margin (e.g. {@code "2000px"}). The instance is created again when
+   * the component approaches the viewport. By default, instances are not released.
+   *
+   * @param margin the margin around the viewport, or {@code null} to never release the instance
+   */
+  public void setReleaseMargin(String margin) {
+    getElement().setProperty("releaseMargin", margin);
+  }
+
+  /**
+   * Returns how far from the viewport a lazy component must be in order to release its
+   * client-side Zoomist instance.
+   *
+   * @return the margin around the viewport, or {@code null} if the instance is never released
+   */
+  public String getReleaseMargin() {
+    return getElement().getProperty("releaseMargin");
+  }
+
+  /**
+   * Sets all the options at once. The options are sent to the client as a single property, and
+   * applied with at most one re-initialization of the client-side widget, which only happens if
+   * the slider or zoomer options change. Options that are not set take their default values. The
+   * individual setters of this class update the same set of options.
+   *
+   * @param options the options
+   */
+  public void setOptions(ZoomistOptions options) {
+    this.options = Objects.requireNonNull(options);
+    getElement().setPropertyJson("options", options.toJson());
+  }
+
+  /**
+   * Returns the current options.
+   *
+   * @return the options
+   */
+  public ZoomistOptions getOptions() {
+    return options;
+  }
+
+  private void updateOptions(ZoomistOptions.Builder builder) {
+    setOptions(builder.build());
   }
 
   /**
@@ -140,7 +644,7 @@ public class Zoomist extends Component {
    *                if false, slider is not visible
    */
   public void setSlider(boolean visible) {
-    getElement().setProperty("slider", visible);
+    updateOptions(options.toBuilder().slider(visible));
   }
 
   /**
@@ -151,17 +655,7 @@ public class Zoomist extends Component {
    * @param maxRatio max ratio of the image
    */
   public void setSlider(String el, Direction direction, Double maxRatio) {
-    JsonObject options = Json.createObject();
-    if (el != null) {
-      options.put("el", el);
-    }
-    if (direction != null) {
-      options.put("direction", direction.value);
-    }
-    if (maxRatio != null) {
-      options.put("maxRatio", maxRatio);
-    }
-    getElement().setPropertyJson("slider", options);
+    updateOptions(options.toBuilder().slider(el, direction, maxRatio));
   }
 
   /**
@@ -171,7 +665,7 @@ public class Zoomist extends Component {
    *         false, slider is not visible
    */
   public boolean isSlider() {
-    return getElement().getProperty("slider", false);
+    return Boolean.TRUE.equals(options.getSlider());
   }
 
   /**
@@ -182,7 +676,7 @@ public class Zoomist extends Component {
    *                if false, zoomer is not visible
    */
   public void setZoomer(boolean visible) {
-    getElement().setProperty("zoomer", visible);
+    updateOptions(options.toBuilder().zoomer(visible));
   }
 
   /**
@@ -193,15 +687,7 @@ public class Zoomist extends Component {
    * @param disableOnBounds zoomer will be disabled when image can't be larger or smalle
    */
   public void setZoomer(String inEl, String outEl, boolean disableOnBounds) {
-    JsonObject options = Json.createObject();
-    if (inEl != null) {
-      options.put("inEl", inEl);
-    }
-    if (outEl != null) {
-      options.put("outEl", outEl);
-    }
-    options.put("disableOnBounds", disableOnBounds);
-    getElement().setPropertyJson("zoomer", options);
+    updateOptions(options.toBuilder().zoomer(inEl, outEl, disableOnBounds));
   }
 
   /**
@@ -211,7 +697,7 @@ public class Zoomist extends Component {
    *         false, zoomer is not visible
    */
   public boolean isZoomer() {
-    return getElement().getProperty("zoomer", false);
+    return Boolean.TRUE.equals(options.getZoomer());
   }
 
   /**
@@ -220,7 +706,7 @@ public class Zoomist extends Component {
    * @return the image fill type
    */
   public Fill getFill() {
-    return Fill.valueOf(getElement().getProperty("fill", Fill.NONE.value));
+    return options.getFill() != null ? options.getFill() : Fill.NONE;
   }
 
   /**
@@ -230,7 +716,7 @@ public class Zoomist extends Component {
    */
   public void setFill(Fill fill) {
     Objects.requireNonNull(fill);
-    getElement().setProperty("fill", fill.value);
+    updateOptions(options.toBuilder().fill(fill));
   }
 
   /**
@@ -240,7 +726,7 @@ public class Zoomist extends Component {
    *                  if false, image is not draggable
    */
   public void setDraggable(boolean draggable) {
-    getElement().setProperty("draggable", draggable);
+    updateOptions(options.toBuilder().draggable(draggable));
   }
 
   /**
@@ -250,7 +736,7 @@ public class Zoomist extends Component {
    *         false, image is not draggable
    */
   public boolean isDraggable() {
-    return getElement().getProperty("draggable", false);
+    return Boolean.TRUE.equals(options.getDraggable());
   }
 
   /**
@@ -260,7 +746,7 @@ public class Zoomist extends Component {
    *                  if false, image is not wheelable
    */
   public void setWheelable(boolean wheelable) {
-    getElement().setProperty("wheelable", wheelable);
+    updateOptions(options.toBuilder().wheelable(wheelable));
   }
 
   /**
@@ -270,7 +756,7 @@ public class Zoomist extends Component {
    *         false, image is not wheelable
    */
   public boolean isWheelable() {
-    return getElement().getProperty("wheelable", false);
+    return Boolean.TRUE.equals(options.getWheelable());
   }
 
   /**
@@ -280,7 +766,7 @@ public class Zoomist extends Component {
    *                  false, image is not pinchable
    */
   public void setPinchable(boolean pinchable) {
-    getElement().setProperty("pinchable", pinchable);
+    updateOptions(options.toBuilder().pinchable(pinchable));
   }
 
   /**
@@ -290,7 +776,7 @@ public class Zoomist extends Component {
    *         false, image is not pinchable
    */
   public boolean isPinchable() {
-    return getElement().getProperty("pinchable", false);
+    return Boolean.TRUE.equals(options.getPinchable());
   }
 
   /**
@@ -300,7 +786,7 @@ public class Zoomist extends Component {
    *               if false, image cannot be drag out of bounds
    */
   public void setBounds(boolean bounds) {
-    getElement().setProperty("bounds", bounds);
+    updateOptions(options.toBuilder().bounds(bounds));
   }
 
   /**
@@ -310,7 +796,7 @@ public class Zoomist extends Component {
    *         false, image cannot be drag out of bounds
    */
   public boolean isBounds() {
-    return getElement().getProperty("bounds", false);
+    return Boolean.TRUE.equals(options.getBounds());
   }
 
   /**
@@ -319,16 +805,17 @@ public class Zoomist extends Component {
    * @param value the zoom ratio
    */
   public void setZoomRatio(double value) {
-    getElement().setProperty("zoomRatio", value);
+    updateOptions(options.toBuilder().zoomRatio(value));
   }
 
   /**
-   * Returns the ratio of a zoom.
+   * Returns the ratio of a zoom. This is the step applied when zooming in or out; the current zoom
+   * ratio of the image is available from {@link #getViewState()}.
    * 
    * @return the zoom ratio
    */
   public double getZoomRatio() {
-    return getElement().getProperty("zoomRatio", 0.1d);
+    return options.getZoomRatio() != null ? options.getZoomRatio() : 0.1d;
   }
 
   /**
@@ -337,7 +824,7 @@ public class Zoomist extends Component {
    * @param value the image max ratio
    */
   public void setMaxRatio(double value) {
-    getElement().setProperty("maxRatio", value);
+    updateOptions(options.toBuilder().maxRatio(value));
   }
 
   /**
@@ -346,7 +833,7 @@ public class Zoomist extends Component {
    * @return the image max ratio
    */
   public double getMaxRatio() {
-    return getElement().getProperty("maxRatio", 1);
+    return options.getMaxRatio() != null ? options.getMaxRatio() : 1;
   }
 
   /**
@@ -355,7 +842,7 @@ public class Zoomist extends Component {
    * @param value the height of the container
    */
   public void setHeight(String value) {
-    getElement().setProperty("height", value);
+    updateOptions(options.toBuilder().height(value));
   }
 
   /**
@@ -364,7 +851,7 @@ public class Zoomist extends Component {
    * @return the height of the container
    */
   public String getHeight() {
-    return getElement().getProperty("height");
+    return options.getHeight();
   }
 
   /**
@@ -373,7 +860,7 @@ public class Zoomist extends Component {
    * @param ratio the ratio of the zooming
    */
   public void zoom(double ratio) {
-    getElement().callJsFunction("zoom", ratio);
+    commands().zoom(ratio);
   }
 
   /**
@@ -383,7 +870,7 @@ public class Zoomist extends Component {
    * @param y y position
    */
   public void move(double x, double y) {
-    getElement().callJsFunction("move", x, y);
+    commands().move(x, y);
   }
 
   /**
@@ -393,14 +880,76 @@ public class Zoomist extends Component {
    * @param y y position
    */
   public void moveTo(double x, double y) {
-    getElement().callJsFunction("moveTo", x, y);
+    commands().moveTo(x, y);
   }
 
   /**
    * Resets the image to initial state.
    */
   public void reset() {
-    getElement().callJsFunction("reset");
+    commands().reset();
+  }
+
+  /**
+   * Issues several view commands at once, e.g.
+   * {@code zoomist.batch(b -> b.zoomTo(2).moveTo(x, y))}. Commands issued during the same server
+   * round-trip, either through this method or through {@link #zoom(double)},
+   * {@link #move(double, double)}, {@link #moveTo(double, double)} and {@link #reset()}, are sent
+   * to the client in a single call, and commands that are superseded by a later one are discarded.
+   * Commands that reach the client before the image is ready, for instance while a
+   * {@linkplain #setLazy(boolean) lazy} component is out of view, are applied once it is ready.
+   *
+   * @param commands a callback that issues the commands
+   */
+  public void batch(SerializableConsumer<ViewCommands> commands) {
+    commands.accept(commands());
+  }
+
+  private ViewCommands commands() {
+    if (pendingCommands == null) {
+      pendingCommands = new ViewCommands(viewState);
+      getElement().getNode().runWhenAttached(
+          ui -> ui.beforeClientResponse(this, context -> flushCommands()));
+    }
+    return pendingCommands;
+  }
+
+  private void flushCommands() {
+    ViewCommands commands = pendingCommands;
+    pendingCommands = null;
+    if (commands != null && !commands.isEmpty()) {
+      getElement().callJsFunction("batch", commands.toArguments());
+    }
+  }
+
+  /**
+   * Returns the current view of the image (zoom ratio, offset and container size), as last
+   * reported by the client. Unlike {@link #getContainerData(SerializableConsumer)}, it does not
+   * require a round-trip to the client.
+   * <p>
+   * The view state is only tracked once this method has been called, so that components whose
+   * view state is not used do not receive the events that update it. Call it when the component
+   * is created, in order to track the view from the start.
+   * </p>
+   *
+   * @return the current view state
+   */
+  public ViewState getViewState() {
+    if (!viewStateTracked) {
+      viewStateTracked = true;
+      addZoomListener(e -> {
+        viewState.setRatio(e.getRatio());
+        viewState.setTranslate(e.getOffsetX(), e.getOffsetY());
+      });
+      addDragEndListener(e -> viewState.setTranslate(e.getOffsetX(), e.getOffsetY()));
+      addSlideEndListener(e -> {
+        viewState.setSliderValue(e.getValue());
+        viewState.setTranslate(e.getOffsetX(), e.getOffsetY());
+      });
+      addReadyListener(e -> viewState.setContainerSize(e.getWidth(), e.getHeight()));
+      addResizeListener(e -> viewState.setContainerSize(e.getWidth(), e.getHeight()));
+    }
+    return viewState;
   }
 
   /**
@@ -419,6 +968,60 @@ public class Zoomist extends Component {
     });
   }
 
+  /**
+   * Sets the policy that determines how often events of the given type are delivered from the
+   * client to the server. The policy applies to the listeners that are already registered and to
+   * those registered afterwards.
+   * <p>
+   * By default, high-frequency events ({@link DragEvent}, {@link ZoomEvent}, {@link SlideEvent},
+   * {@link PinchEvent}, {@link WheelEvent} and {@link ResizeEvent}) are debounced for 250 ms, and
+   * the other events are delivered immediately. Note that disabling {@link ZoomEvent},
+   * {@link DragEndEvent}, {@link SlideEndEvent}, {@link ReadyEvent} or {@link ResizeEvent} stops
+   * updating the {@linkplain #getViewState() view state}.
+   * </p>
+   *
+   * @param eventType the event type
+   * @param policy the delivery policy, or {@code null} to restore the default policy
+   */
+  public void setEventPolicy(Class<? extends ComponentEvent<Zoomist>> eventType,
+      EventPolicy policy) {
+    if (policy != null) {
+      eventPolicies.put(eventType, policy);
+    } else {
+      eventPolicies.remove(eventType);
+    }
+    EventPolicy effectivePolicy = getEventPolicy(eventType);
+    domRegistrations.getOrDefault(eventType, List.of()).forEach(effectivePolicy::applyTo);
+  }
+
+  /**
+   * Returns the policy that determines how often events of the given type are delivered from the
+   * client to the server.
+   *
+   * @param eventType the event type
+   * @return the delivery policy
+   */
+  public EventPolicy getEventPolicy(Class<? extends ComponentEvent<Zoomist>> eventType) {
+    EventPolicy policy = eventPolicies.get(eventType);
+    return policy != null ? policy : EventPolicy.of(eventType);
+  }
+
+  private <T extends ComponentEvent<Zoomist>> Registration addPolicyListener(Class<T> eventType,
+      ComponentEventListener<T> listener) {
+    List<DomListenerRegistration> registrations =
+        domRegistrations.computeIfAbsent(eventType, type -> new ArrayList<>());
+    DomListenerRegistration[] domRegistration = new DomListenerRegistration[1];
+    Registration registration = getEventBus().addListener(eventType, listener, dom -> {
+      getEventPolicy(eventType).applyTo(dom);
+      domRegistration[0] = dom;
+    });
+    registrations.add(domRegistration[0]);
+    return () -> {
+      registration.remove();
+      registrations.remove(domRegistration[0]);
+    };
+  }
+
   /**
    * Adds a {@link ReadyEvent} listener to zoomist.
    * 
@@ -426,7 +1029,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addReadyListener(ComponentEventListener<ReadyEvent> listener) {
-    return addListener(ReadyEvent.class, listener);
+    return addPolicyListener(ReadyEvent.class, listener);
   }
 
   /**
@@ -436,7 +1039,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addZoomListener(ComponentEventListener<ZoomEvent> listener) {
-    return addListener(ZoomEvent.class, listener);
+    return addPolicyListener(ZoomEvent.class, listener);
   }
 
   /**
@@ -446,7 +1049,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addWheelListener(ComponentEventListener<WheelEvent> listener) {
-    return addListener(WheelEvent.class, listener);
+    return addPolicyListener(WheelEvent.class, listener);
   }
 
   /**
@@ -456,7 +1059,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addDragStartListener(ComponentEventListener<DragStartEvent> listener) {
-    return addListener(DragStartEvent.class, listener);
+    return addPolicyListener(DragStartEvent.class, listener);
   }
 
   /**
@@ -466,7 +1069,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addDragListener(ComponentEventListener<DragEvent> listener) {
-    return addListener(DragEvent.class, listener);
+    return addPolicyListener(DragEvent.class, listener);
   }
 
   /**
@@ -476,7 +1079,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addDragEndListener(ComponentEventListener<DragEndEvent> listener) {
-    return addListener(DragEndEvent.class, listener);
+    return addPolicyListener(DragEndEvent.class, listener);
   }
 
   /**
@@ -486,7 +1089,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addSlideStartListener(ComponentEventListener<SlideStartEvent> listener) {
-    return addListener(SlideStartEvent.class, listener);
+    return addPolicyListener(SlideStartEvent.class, listener);
   }
 
   /**
@@ -496,7 +1099,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addSlideListener(ComponentEventListener<SlideEvent> listener) {
-    return addListener(SlideEvent.class, listener);
+    return addPolicyListener(SlideEvent.class, listener);
   }
 
   /**
@@ -506,7 +1109,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addSlideEndListener(ComponentEventListener<SlideEndEvent> listener) {
-    return addListener(SlideEndEvent.class, listener);
+    return addPolicyListener(SlideEndEvent.class, listener);
   }
 
   /**
@@ -516,7 +1119,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addPinchStartListener(ComponentEventListener<PinchStartEvent> listener) {
-    return addListener(PinchStartEvent.class, listener);
+    return addPolicyListener(PinchStartEvent.class, listener);
   }
 
   /**
@@ -526,7 +1129,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addPinchListener(ComponentEventListener<PinchEvent> listener) {
-    return addListener(PinchEvent.class, listener);
+    return addPolicyListener(PinchEvent.class, listener);
   }
 
   /**
@@ -536,7 +1139,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addPinchEndListener(ComponentEventListener<PinchEndEvent> listener) {
-    return addListener(PinchEndEvent.class, listener);
+    return addPolicyListener(PinchEndEvent.class, listener);
   }
 
   /**
@@ -546,7 +1149,7 @@ public class Zoomist extends Component {
    * @return a handle for the listener
    */
   public Registration addResizeListener(ComponentEventListener<ResizeEvent> listener) {
-    return addListener(ResizeEvent.class, listener);
+    return addPolicyListener(ResizeEvent.class, listener);
   }
 
 }
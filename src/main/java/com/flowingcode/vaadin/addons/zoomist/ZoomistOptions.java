@@ -0,0 +1,392 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist;
+
+import com.flowingcode.vaadin.addons.zoomist.Zoomist.Direction;
+import com.flowingcode.vaadin.addons.zoomist.Zoomist.Fill;
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import java.io.Serializable;
+import lombok.Getter;
+
+/**
+ * Immutable set of {@link Zoomist} options. Options that are not set keep the default value of
+ * the client-side component. The options are sent to the client as a single property and applied
+ * at once.
+ *
+ * @see Zoomist#setOptions(ZoomistOptions)
+ */
+@Getter
+@SuppressWarnings("serial")
+public final class ZoomistOptions implements Serializable {
+
+  private static final ZoomistOptions DEFAULT = builder().build();
+
+  /** The image fill type. */
+  private final Fill fill;
+
+  /** Whether the image is draggable. */
+  private final Boolean draggable;
+
+  /** Whether the image is zoomable when mouse wheeling. */
+  private final Boolean wheelable;
+
+  /** Whether the image is zoomable when pinching. */
+  private final Boolean pinchable;
+
+  /** Whether the image is kept within the bounds of the container. */
+  private final Boolean bounds;
+
+  /** The step applied when zooming in or out. */
+  private final Double zoomRatio;
+
+  /** The max ratio of the image. */
+  private final Double maxRatio;
+
+  /** The height of the container. */
+  private final String height;
+
+  /** Whether the slider is visible. */
+  private final Boolean slider;
+
+  /** The CSS selector of the slider element. */
+  private final String sliderEl;
+
+  /** The direction of the slider. */
+  private final Direction sliderDirection;
+
+  /** The max ratio of the slider. */
+  private final Double sliderMaxRatio;
+
+  /** Whether the zoomer is visible. */
+  private final Boolean zoomer;
+
+  /** The CSS selector of the zoom in element. */
+  private final String zoomerInEl;
+
+  /** The CSS selector of the zoom out element. */
+  private final String zoomerOutEl;
+
+  /** Whether the zoomer is disabled when the image cannot be larger or smaller. */
+  private final Boolean zoomerDisableOnBounds;
+
+  private ZoomistOptions(Builder builder) {
+    fill = builder.fill;
+    draggable = builder.draggable;
+    wheelable = builder.wheelable;
+    pinchable = builder.pinchable;
+    bounds = builder.bounds;
+    zoomRatio = builder.zoomRatio;
+    maxRatio = builder.maxRatio;
+    height = builder.height;
+    slider = builder.slider;
+    sliderEl = builder.sliderEl;
+    sliderDirection = builder.sliderDirection;
+    sliderMaxRatio = builder.sliderMaxRatio;
+    zoomer = builder.zoomer;
+    zoomerInEl = builder.zoomerInEl;
+    zoomerOutEl = builder.zoomerOutEl;
+    zoomerDisableOnBounds = builder.zoomerDisableOnBounds;
+  }
+
+  /**
+   * Returns an empty set of options.
+   *
+   * @return the default options
+   */
+  public static ZoomistOptions defaults() {
+    return DEFAULT;
+  }
+
+  /**
+   * Creates a builder for a new set of options.
+   *
+   * @return a new builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Creates a builder initialized with these options.
+   *
+   * @return a new builder
+   */
+  public Builder toBuilder() {
+    Builder builder = new Builder();
+    builder.fill = fill;
+    builder.draggable = draggable;
+    builder.wheelable = wheelable;
+    builder.pinchable = pinchable;
+    builder.bounds = bounds;
+    builder.zoomRatio = zoomRatio;
+    builder.maxRatio = maxRatio;
+    builder.height = height;
+    builder.slider = slider;
+    builder.sliderEl = sliderEl;
+    builder.sliderDirection = sliderDirection;
+    builder.sliderMaxRatio = sliderMaxRatio;
+    builder.zoomer = zoomer;
+    builder.zoomerInEl = zoomerInEl;
+    builder.zoomerOutEl = zoomerOutEl;
+    builder.zoomerDisableOnBounds = zoomerDisableOnBounds;
+    return builder;
+  }
+
+  JsonObject toJson() {
+    JsonObject json = Json.createObject();
+    if (fill != null) {
+      json.put("fill", fill.getValue());
+    }
+    put(json, "draggable", draggable);
+    put(json, "wheelable", wheelable);
+    put(json, "pinchable", pinchable);
+    put(json, "bounds", bounds);
+    if (zoomRatio != null) {
+      json.put("zoomRatio", zoomRatio);
+    }
+    if (maxRatio != null) {
+      json.put("maxRatio", maxRatio);
+    }
+    if (height != null) {
+      json.put("height", height);
+    }
+    if (sliderEl != null || sliderDirection != null || sliderMaxRatio != null) {
+      JsonObject options = Json.createObject();
+      if (sliderEl != null) {
+        options.put("el", sliderEl);
+      }
+      if (sliderDirection != null) {
+        options.put("direction", sliderDirection.getValue());
+      }
+      if (sliderMaxRatio != null) {
+        options.put("maxRatio", sliderMaxRatio);
+      }
+      json.put("slider", options);
+    } else {
+      put(json, "slider", slider);
+    }
+    if (zoomerInEl != null || zoomerOutEl != null || zoomerDisableOnBounds != null) {
+      JsonObject options = Json.createObject();
+      if (zoomerInEl != null) {
+        options.put("inEl", zoomerInEl);
+      }
+      if (zoomerOutEl != null) {
+        options.put("outEl", zoomerOutEl);
+      }
+      if (zoomerDisableOnBounds != null) {
+        options.put("disableOnBounds", zoomerDisableOnBounds);
+      }
+      json.put("zoomer", options);
+    } else {
+      put(json, "zoomer", zoomer);
+    }
+    return json;
+  }
+
+  private static void put(JsonObject json, String key, Boolean value) {
+    if (value != null) {
+      json.put(key, value);
+    }
+  }
+
+  /**
+   * Builder of {@link ZoomistOptions}.
+   */
+  public static final class Builder implements Serializable {
+
+    private Fill fill;
+    private Boolean draggable;
+    private Boolean wheelable;
+    private Boolean pinchable;
+    private Boolean bounds;
+    private Double zoomRatio;
+    private Double maxRatio;
+    private String height;
+    private Boolean slider;
+    private String sliderEl;
+    private Direction sliderDirection;
+    private Double sliderMaxRatio;
+    private Boolean zoomer;
+    private String zoomerInEl;
+    private String zoomerOutEl;
+    private Boolean zoomerDisableOnBounds;
+
+    private Builder() {}
+
+    /**
+     * Sets the image fill type.
+     *
+     * @param fill the image fill type
+     * @return this builder
+     */
+    public Builder fill(Fill fill) {
+      this.fill = fill;
+      return this;
+    }
+
+    /**
+     * Sets whether the image is draggable.
+     *
+     * @param draggable if true, image is draggable
+     * @return this builder
+     */
+    public Builder draggable(boolean draggable) {
+      this.draggable = draggable;
+      return this;
+    }
+
+    /**
+     * Sets whether the image is zoomable when mouse wheeling.
+     *
+     * @param wheelable if true, image is wheelable
+     * @return this builder
+     */
+    public Builder wheelable(boolean wheelable) {
+      this.wheelable = wheelable;
+      return this;
+    }
+
+    /**
+     * Sets whether the image is zoomable when pinching.
+     *
+     * @param pinchable if true, image is pinchable
+     * @return this builder
+     */
+    public Builder pinchable(boolean pinchable) {
+      this.pinchable = pinchable;
+      return this;
+    }
+
+    /**
+     * Sets whether the image is kept within the bounds of the container.
+     *
+     * @param bounds if true, image cannot be dragged out of bounds
+     * @return this builder
+     */
+    public Builder bounds(boolean bounds) {
+      this.bounds = bounds;
+      return this;
+    }
+
+    /**
+     * Sets the step applied when zooming in or out.
+     *
+     * @param zoomRatio the zoom ratio
+     * @return this builder
+     */
+    public Builder zoomRatio(double zoomRatio) {
+      this.zoomRatio = zoomRatio;
+      return this;
+    }
+
+    /**
+     * Sets the max ratio of the image.
+     *
+     * @param maxRatio the image max ratio
+     * @return this builder
+     */
+    public Builder maxRatio(double maxRatio) {
+      this.maxRatio = maxRatio;
+      return this;
+    }
+
+    /**
+     * Sets the height of the container.
+     *
+     * @param height the height of the container
+     * @return this builder
+     */
+    public Builder height(String height) {
+      this.height = height;
+      return this;
+    }
+
+    /**
+     * Sets whether the slider is visible, with default options.
+     *
+     * @param visible if true, slider is visible
+     * @return this builder
+     */
+    public Builder slider(boolean visible) {
+      slider = visible;
+      sliderEl = null;
+      sliderDirection = null;
+      sliderMaxRatio = null;
+      return this;
+    }
+
+    /**
+     * Makes the slider visible with the given options.
+     *
+     * @param el string with CSS selector or querySelector of slider
+     * @param direction direction of the slider
+     * @param maxRatio max ratio of the image
+     * @return this builder
+     */
+    public Builder slider(String el, Direction direction, Double maxRatio) {
+      slider = true;
+      sliderEl = el;
+      sliderDirection = direction;
+      sliderMaxRatio = maxRatio;
+      return this;
+    }
+
+    /**
+     * Sets whether the zoomer is visible, with default options.
+     *
+     * @param visible if true, zoomer is visible
+     * @return this builder
+     */
+    public Builder zoomer(boolean visible) {
+      zoomer = visible;
+      zoomerInEl = null;
+      zoomerOutEl = null;
+      zoomerDisableOnBounds = null;
+      return this;
+    }
+
+    /**
+     * Makes the zoomer visible with the given options.
+     *
+     * @param inEl string with CSS selector or querySelector of zoom in element
+     * @param outEl string with CSS selector or querySelector of zoom out element
+     * @param disableOnBounds zoomer will be disabled when image can't be larger or smaller
+     * @return this builder
+     */
+    public Builder zoomer(String inEl, String outEl, boolean disableOnBounds) {
+      zoomer = true;
+      zoomerInEl = inEl;
+      zoomerOutEl = outEl;
+      zoomerDisableOnBounds = disableOnBounds;
+      return this;
+    }
+
+    /**
+     * Builds the options.
+     *
+     * @return a new immutable set of options
+     */
+    public ZoomistOptions build() {
+      return new ZoomistOptions(this);
+    }
+  }
+
+}
@@ -0,0 +1,482 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import lombok.Getter;
+
+/**
+ * Read-only tile store that keeps the whole pyramid in a single archive file, so that pyramids
+ * with millions of tiles do not use millions of files. Archives are written once with a
+ * {@link Writer}, e.g. by a {@link PyramidBuilder}.
+ * <p>
+ * The archive is memory-mapped when it is first read, and the file is closed right after it has
+ * been mapped, so that open archives do not hold file handles. Reading a tile is a binary search
+ * in the sorted index followed by a slice of the mapped data, without any system call.
+ * </p>
+ * <p>
+ * The archive is a sequence of encoded tiles, followed by an index of fixed-size entries sorted
+ * by level, column and row, the descriptor and the overview location, and a fixed-size trailer
+ * with the offsets of the index and descriptor. Data is mapped in segments of 1 GiB, and the
+ * writer ensures that no tile crosses a segment boundary.
+ * </p>
+ */
+public final class ArchiveTileStore implements TileStore, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int MAGIC = 0x5a4d5441; // "ZMTA"
+
+  private static final int VERSION = 1;
+
+  /** Size of each mapped segment of the data region. */
+  private static final long SEGMENT_SIZE = 1L << 30;
+
+  /** Size of an index entry: level, column, row, length (int) and offset (long). */
+  private static final int ENTRY_SIZE = 24;
+
+  /** Size of the trailer: index offset, metadata offset (long), entry count and magic (int). */
+  private static final int TRAILER_SIZE = 24;
+
+  @Getter
+  private final File file;
+
+  private transient volatile Mapping mapping;
+
+  /**
+   * Creates a store that reads the given archive. The archive is not opened until it is first
+   * read.
+   *
+   * @param file the archive file
+   */
+  public ArchiveTileStore(File file) {
+    this.file = Objects.requireNonNull(file);
+  }
+
+  /**
+   * Creates a writer for a new archive. The archive is written to a temporary file, which
+   * replaces the given file when the writer is closed.
+   *
+   * @param file the archive file
+   * @return a new writer
+   * @throws IOException if the archive cannot be created
+   */
+  public static Writer create(File file) throws IOException {
+    return new Writer(file);
+  }
+
+  /**
+   * Returns the number of tiles in the archive.
+   *
+   * @return the number of tiles
+   * @throws IOException if the archive cannot be read
+   */
+  public int getTileCount() throws IOException {
+    return getMapping().entryCount;
+  }
+
+  @Override
+  public Descriptor getDescriptor() throws IOException {
+    return getMapping().descriptor;
+  }
+
+  @Override
+  public byte[] getTile(int level, int column, int row) throws IOException {
+    return toArray(getTileBuffer(level, column, row));
+  }
+
+  /**
+   * Returns an encoded tile as a read-only slice of the mapped archive, without copying it.
+   *
+   * @param level the pyramid level
+   * @param column the tile column
+   * @param row the tile row
+   * @return the encoded tile, or {@code null} if the archive does not contain the tile
+   * @throws IOException if the archive cannot be read
+   */
+  @Override
+  public ByteBuffer getTileBuffer(int level, int column, int row) throws IOException {
+    Mapping mapping = getMapping();
+    ByteBuffer index = mapping.index;
+    int low = 0;
+    int high = mapping.entryCount - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int position = middle * ENTRY_SIZE;
+      int cmp = compare(index.getInt(position), index.getInt(position + 4),
+          index.getInt(position + 8), level, column, row);
+      if (cmp < 0) {
+        low = middle + 1;
+      } else if (cmp > 0) {
+        high = middle - 1;
+      } else {
+        return mapping.slice(index.getLong(position + 16), index.getInt(position + 12));
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public byte[] getOverview() throws IOException {
+    Mapping mapping = getMapping();
+    return mapping.overviewLength < 0 ? null
+        : toArray(mapping.slice(mapping.overviewOffset, mapping.overviewLength));
+  }
+
+  @Override
+  public boolean containsTile(int level, int column, int row) throws IOException {
+    return getTileBuffer(level, column, row) != null;
+  }
+
+  @Override
+  public boolean containsOverview() throws IOException {
+    return getMapping().overviewLength >= 0;
+  }
+
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
+  @Override
+  public void putDescriptor(Descriptor descriptor) {
+    throw new UnsupportedOperationException("Tile archives are read-only");
+  }
+
+  @Override
+  public void putTile(int level, int column, int row, byte[] data) {
+    throw new UnsupportedOperationException("Tile archives are read-only");
+  }
+
+  @Override
+  public void putOverview(byte[] data) {
+    throw new UnsupportedOperationException("Tile archives are read-only");
+  }
+
+  @Override
+  public String toString() {
+    return file.toString();
+  }
+
+  private static byte[] toArray(ByteBuffer buffer) {
+    if (buffer == null) {
+      return null;
+    }
+    byte[] data = new byte[buffer.remaining()];
+    buffer.get(data);
+    return data;
+  }
+
+  private static int compare(int level1, int column1, int row1, int level2, int column2,
+      int row2) {
+    if (level1 != level2) {
+      return Integer.compare(level1, level2);
+    }
+    if (column1 != column2) {
+      return Integer.compare(column1, column2);
+    }
+    return Integer.compare(row1, row2);
+  }
+
+  private Mapping getMapping() throws IOException {
+    Mapping mapping = this.mapping;
+    if (mapping == null) {
+      synchronized (this) {
+        mapping = this.mapping;
+        if (mapping == null) {
+          mapping = new Mapping(file.toPath());
+          this.mapping = mapping;
+        }
+      }
+    }
+    return mapping;
+  }
+
+  /** The mapped regions of an open archive. */
+  private static final class Mapping {
+
+    private final MappedByteBuffer[] segments;
+    private final MappedByteBuffer index;
+    private final int entryCount;
+    private final Descriptor descriptor;
+    private final long overviewOffset;
+    private final int overviewLength;
+
+    Mapping(Path path) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        long size = channel.size();
+        if (size < TRAILER_SIZE) {
+          throw new IOException("Not a tile archive: " + path);
+        }
+        ByteBuffer trailer = channel.map(MapMode.READ_ONLY, size - TRAILER_SIZE, TRAILER_SIZE);
+        long indexOffset = trailer.getLong();
+        long metadataOffset = trailer.getLong();
+        entryCount = trailer.getInt();
+        if (trailer.getInt() != MAGIC || indexOffset < 0 || metadataOffset < indexOffset
+            || metadataOffset > size - TRAILER_SIZE
+            || (long) entryCount * ENTRY_SIZE != metadataOffset - indexOffset) {
+          throw new IOException("Not a tile archive: " + path);
+        }
+        if (metadataOffset - indexOffset > Integer.MAX_VALUE) {
+          throw new IOException("Tile archive index is too large: " + path);
+        }
+
+        index = channel.map(MapMode.READ_ONLY, indexOffset, metadataOffset - indexOffset);
+        segments = new MappedByteBuffer[(int) ((indexOffset + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+        for (int i = 0; i < segments.length; i++) {
+          long position = i * SEGMENT_SIZE;
+          segments[i] = channel.map(MapMode.READ_ONLY, position,
+              Math.min(SEGMENT_SIZE, indexOffset - position));
+        }
+
+        ByteBuffer metadata = channel.map(MapMode.READ_ONLY, metadataOffset,
+            size - TRAILER_SIZE - metadataOffset);
+        byte[] bytes = new byte[metadata.remaining()];
+        metadata.get(bytes);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != VERSION) {
+          throw new IOException("Unsupported tile archive version: " + path);
+        }
+        overviewOffset = in.readLong();
+        overviewLength = in.readInt();
+        if (in.readBoolean()) {
+          TilePyramid pyramid = new TilePyramid(in.readInt(), in.readInt(), in.readInt());
+          descriptor = new Descriptor(pyramid, in.readUTF(), in.readLong());
+        } else {
+          descriptor = null;
+        }
+      }
+    }
+
+    ByteBuffer slice(long offset, int length) {
+      int position = (int) (offset % SEGMENT_SIZE);
+      return segments[(int) (offset / SEGMENT_SIZE)].slice(position, length).asReadOnlyBuffer();
+    }
+  }
+
+  /**
+   * Writes a new archive. Tiles can be written concurrently, in any order; the index is kept in
+   * memory and written when the writer is closed. Tiles that have been written can be read back
+   * before the writer is closed.
+   */
+  public static final class Writer implements TileStore, Closeable {
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final Map<Long, long[]> entries = new HashMap<>();
+    private long position;
+    private long[] overview;
+    private Descriptor descriptor;
+    private boolean closed;
+
+    private Writer(File file) throws IOException {
+      target = file.toPath().toAbsolutePath();
+      Files.createDirectories(target.getParent());
+      temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+      channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public synchronized Descriptor getDescriptor() {
+      return descriptor;
+    }
+
+    @Override
+    public byte[] getTile(int level, int column, int row) throws IOException {
+      long[] entry;
+      synchronized (this) {
+        entry = entries.get(key(level, column, row));
+      }
+      return entry == null ? null : read(entry);
+    }
+
+    @Override
+    public byte[] getOverview() throws IOException {
+      long[] entry;
+      synchronized (this) {
+        entry = overview;
+      }
+      return entry == null ? null : read(entry);
+    }
+
+    @Override
+    public synchronized boolean containsTile(int level, int column, int row) {
+      return entries.containsKey(key(level, column, row));
+    }
+
+    @Override
+    public synchronized boolean containsOverview() {
+      return overview != null;
+    }
+
+    @Override
+    public synchronized void putDescriptor(Descriptor descriptor) {
+      this.descriptor = Objects.requireNonNull(descriptor);
+    }
+
+    @Override
+    public void putTile(int level, int column, int row, byte[] data) throws IOException {
+      long[] entry = append(data);
+      synchronized (this) {
+        entries.put(key(level, column, row), entry);
+      }
+    }
+
+    @Override
+    public void putOverview(byte[] data) throws IOException {
+      long[] entry = append(data);
+      synchronized (this) {
+        overview = entry;
+      }
+    }
+
+    private long[] append(byte[] data) throws IOException {
+      if (data.length > SEGMENT_SIZE) {
+        throw new IOException("Tile is too large for an archive");
+      }
+      long offset;
+      synchronized (this) {
+        if (closed) {
+          throw new IOException("Archive writer is closed");
+        }
+        offset = position;
+        if (offset / SEGMENT_SIZE != (offset + data.length - 1) / SEGMENT_SIZE) {
+          // skip to the next segment, so that the tile can be sliced from a single mapping
+          offset = (offset / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+        }
+        position = offset + data.length;
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+      for (long p = offset; buffer.hasRemaining();) {
+        p += channel.write(buffer, p);
+      }
+      return new long[] {offset, data.length};
+    }
+
+    private byte[] read(long[] entry) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate((int) entry[1]);
+      for (long p = entry[0]; buffer.hasRemaining();) {
+        int n = channel.read(buffer, p);
+        if (n < 0) {
+          throw new IOException("Unexpected end of tile archive");
+        }
+        p += n;
+      }
+      return buffer.array();
+    }
+
+    private static long key(int level, int column, int row) {
+      return (long) level << 56 | (long) column << 28 | row;
+    }
+
+    /**
+     * Writes the index and moves the archive into place. If no descriptor has been stored, e.g.
+     * because generating the pyramid failed, the archive is discarded instead.
+     *
+     * @throws IOException if the archive cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (descriptor == null) {
+        channel.close();
+        Files.deleteIfExists(temp);
+        return;
+      }
+      try {
+        List<Map.Entry<Long, long[]>> sorted = new ArrayList<>(entries.entrySet());
+        sorted.sort(Comparator.comparing(Map.Entry::getKey));
+
+        long indexOffset = position;
+        ByteBuffer index = ByteBuffer.allocate(sorted.size() * ENTRY_SIZE);
+        for (Map.Entry<Long, long[]> entry : sorted) {
+          long key = entry.getKey();
+          index.putInt((int) (key >>> 56));
+          index.putInt((int) (key >>> 28 & 0xfffffff));
+          index.putInt((int) (key & 0xfffffff));
+          index.putInt((int) entry.getValue()[1]);
+          index.putLong(entry.getValue()[0]);
+        }
+        index.flip();
+        long p = indexOffset;
+        while (index.hasRemaining()) {
+          p += channel.write(index, p);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(VERSION);
+        out.writeLong(overview == null ? 0 : overview[0]);
+        out.writeInt(overview == null ? -1 : (int) overview[1]);
+        out.writeBoolean(true);
+        TilePyramid pyramid = descriptor.getPyramid();
+        out.writeInt(pyramid.getWidth());
+        out.writeInt(pyramid.getHeight());
+        out.writeInt(pyramid.getTileSize());
+        out.writeUTF(descriptor.getFormat());
+        out.writeLong(descriptor.getLastModified());
+        long metadataOffset = p;
+        ByteBuffer metadata = ByteBuffer.allocate(bytes.size() + TRAILER_SIZE);
+        metadata.put(bytes.toByteArray());
+        metadata.putLong(indexOffset).putLong(metadataOffset).putInt(sorted.size()).putInt(MAGIC);
+        metadata.flip();
+        while (metadata.hasRemaining()) {
+          p += channel.write(metadata, p);
+        }
+        channel.force(true);
+      } finally {
+        channel.close();
+      }
+      try {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+  }
+
+}
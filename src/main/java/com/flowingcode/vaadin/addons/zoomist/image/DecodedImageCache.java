@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Keeps decoded source images, so that every rendition of the same image is generated from a
+ * single decoded copy. Images are softly referenced and therefore released under memory
+ * pressure. Decoding is guarded by a lock on the source id, so that a source image is never
+ * decoded concurrently by several threads.
+ */
+public final class DecodedImageCache {
+
+  private static final DecodedImageCache DEFAULT = new DecodedImageCache();
+
+  /**
+   * Decodes a source image that is not present in the cache.
+   */
+  @FunctionalInterface
+  public interface Decoder {
+    /**
+     * Decodes the source image.
+     *
+     * @return the decoded image
+     * @throws IOException if the image cannot be decoded
+     */
+    BufferedImage decode() throws IOException;
+  }
+
+  private static final class Entry extends SoftReference<BufferedImage> {
+    private final String sourceId;
+
+    Entry(String sourceId, BufferedImage image, ReferenceQueue<BufferedImage> queue) {
+      super(image, queue);
+      this.sourceId = sourceId;
+    }
+  }
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final ReferenceQueue<BufferedImage> queue = new ReferenceQueue<>();
+
+  private final StripedLocks locks = new StripedLocks(64);
+
+  /**
+   * Returns the instance that is shared by all the image sources in the JVM.
+   *
+   * @return the default instance
+   */
+  public static DecodedImageCache getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Returns the decoded image for the given source, decoding it if needed.
+   *
+   * @param sourceId a string that uniquely identifies the source image
+   * @param decoder the decoder of the source image
+   * @return the decoded image
+   * @throws IOException if the image cannot be decoded
+   */
+  public BufferedImage get(String sourceId, Decoder decoder) throws IOException {
+    purge();
+    BufferedImage image = peek(sourceId);
+    if (image == null) {
+      Lock lock = locks.get(sourceId);
+      lock.lock();
+      try {
+        image = peek(sourceId);
+        if (image == null) {
+          image = decoder.decode();
+          entries.put(sourceId, new Entry(sourceId, image, queue));
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Releases the decoded image of the given source.
+   *
+   * @param sourceId the source identifier
+   */
+  public void invalidate(String sourceId) {
+    entries.remove(sourceId);
+  }
+
+  private BufferedImage peek(String sourceId) {
+    Entry entry = entries.get(sourceId);
+    return entry != null ? entry.get() : null;
+  }
+
+  private void purge() {
+    Reference<? extends BufferedImage> ref;
+    while ((ref = queue.poll()) != null) {
+      Entry entry = (Entry) ref;
+      entries.remove(entry.sourceId, entry);
+    }
+  }
+
+}
@@ -0,0 +1,135 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.Getter;
+
+/**
+ * Tile store that keeps the tiles in memory, up to a maximum total size. When the maximum size
+ * is exceeded, the least recently used tiles are evicted. The overview image and the descriptor
+ * are never evicted.
+ * <p>
+ * The tiles are not serialized with the store.
+ * </p>
+ */
+public final class HeapTileStore implements TileStore, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  @Getter
+  private final long maximumSize;
+
+  private transient Map<Long, byte[]> tiles;
+
+  private long size;
+
+  private Descriptor descriptor;
+
+  private byte[] overview;
+
+  /**
+   * Creates a new store.
+   *
+   * @param maximumSize the maximum total size of the stored tiles, in bytes
+   */
+  public HeapTileStore(long maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("Maximum size must not be negative");
+    }
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Returns the current total size of the stored tiles.
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getSize() {
+    return tiles == null ? 0 : size;
+  }
+
+  @Override
+  public synchronized Descriptor getDescriptor() {
+    return descriptor;
+  }
+
+  @Override
+  public synchronized byte[] getTile(int level, int column, int row) {
+    return getTiles().get(key(level, column, row));
+  }
+
+  @Override
+  public synchronized byte[] getOverview() {
+    return overview;
+  }
+
+  @Override
+  public synchronized boolean containsTile(int level, int column, int row) {
+    // unlike get, this does not count as an access for the eviction order
+    return getTiles().containsKey(key(level, column, row));
+  }
+
+  @Override
+  public synchronized boolean containsOverview() {
+    return overview != null;
+  }
+
+  @Override
+  public synchronized void putDescriptor(Descriptor descriptor) {
+    this.descriptor = descriptor;
+  }
+
+  @Override
+  public synchronized void putTile(int level, int column, int row, byte[] data) {
+    byte[] previous = getTiles().put(key(level, column, row), data);
+    if (previous != null) {
+      size -= previous.length;
+    }
+    size += data.length;
+
+    Iterator<byte[]> it = tiles.values().iterator();
+    while (size > maximumSize && it.hasNext()) {
+      size -= it.next().length;
+      it.remove();
+    }
+  }
+
+  @Override
+  public synchronized void putOverview(byte[] data) {
+    overview = data;
+  }
+
+  private Map<Long, byte[]> getTiles() {
+    if (tiles == null) {
+      tiles = new LinkedHashMap<>(16, 0.75f, true);
+      size = 0;
+    }
+    return tiles;
+  }
+
+  private static Long key(int level, int column, int row) {
+    return (long) level << 56 | (long) column << 28 | row;
+  }
+
+}
@@ -0,0 +1,409 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStreamImpl;
+
+/**
+ * Recycles the objects that the image pipeline would otherwise allocate for every rendition:
+ * image readers and writers, raster buffers and output buffers.
+ * <p>
+ * Readers and writers are pooled by service provider, images by type and dimensions, and output
+ * buffers by count. Every pool is bounded: objects that are released when their pool is full
+ * are discarded (readers and writers are disposed), and images are evicted by least recently
+ * used dimensions when their total size exceeds the {@code zoomist.pool.images} system property
+ * (32 MB by default).
+ * </p>
+ * <p>
+ * Objects must not be used after they have been released.
+ * </p>
+ */
+public final class ImagePool {
+
+  private static final int DEFAULT_IDLE =
+      Integer.getInteger("zoomist.pool.idle", Runtime.getRuntime().availableProcessors());
+
+  private static final ImagePool DEFAULT =
+      new ImagePool(DEFAULT_IDLE, Long.getLong("zoomist.pool.images", 32L * 1024 * 1024));
+
+  /** Output buffers that grew larger than this are not kept. */
+  private static final int MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+
+  /** Initial capacity of new output buffers. */
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * In-memory image output stream, which image writers write to directly. Unlike a
+   * {@link javax.imageio.stream.MemoryCacheImageOutputStream}, it does not copy the data through
+   * a cache of its own, and its array is kept when the buffer is recycled.
+   */
+  public static final class Buffer extends ImageOutputStreamImpl {
+
+    private byte[] buf = new byte[INITIAL_BUFFER_SIZE];
+
+    private int count;
+
+    private Buffer() {}
+
+    /**
+     * Returns the current capacity of the buffer.
+     *
+     * @return the capacity in bytes
+     */
+    public int capacity() {
+      return buf.length;
+    }
+
+    /**
+     * Returns the number of bytes written to the buffer.
+     *
+     * @return the size in bytes
+     */
+    public int size() {
+      return count;
+    }
+
+    /**
+     * Returns a copy of the content of the buffer.
+     *
+     * @return the content
+     */
+    public byte[] toByteArray() {
+      return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * Writes the content of the buffer to another stream, without copying it.
+     *
+     * @param out the output stream
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(OutputStream out) throws IOException {
+      out.write(buf, 0, count);
+    }
+
+    @Override
+    public long length() {
+      return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+      bitOffset = 0;
+      return streamPos < count ? buf[(int) streamPos++] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      Objects.checkFromIndexSize(off, len, b.length);
+      bitOffset = 0;
+      if (streamPos >= count) {
+        return len == 0 ? 0 : -1;
+      }
+      int n = (int) Math.min(len, count - streamPos);
+      System.arraycopy(buf, (int) streamPos, b, off, n);
+      streamPos += n;
+      return n;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      flushBits();
+      ensureCapacity(streamPos + 1);
+      buf[(int) streamPos++] = (byte) b;
+      count = Math.max(count, (int) streamPos);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      Objects.checkFromIndexSize(off, len, b.length);
+      flushBits();
+      ensureCapacity(streamPos + len);
+      System.arraycopy(b, off, buf, (int) streamPos, len);
+      streamPos += len;
+      count = Math.max(count, (int) streamPos);
+    }
+
+    private void ensureCapacity(long capacity) throws IOException {
+      if (capacity > Integer.MAX_VALUE - 8) {
+        throw new IOException("Buffer size limit exceeded");
+      } else if (capacity > buf.length) {
+        buf = Arrays.copyOf(buf, (int) Math.min(Integer.MAX_VALUE - 8,
+            Math.max(capacity, 2L * buf.length)));
+      }
+    }
+
+    /** Empties the buffer, keeping its array. */
+    void clear() {
+      count = 0;
+      streamPos = 0;
+      flushedPos = 0;
+      bitOffset = 0;
+    }
+  }
+
+  private final KeyedPool<ImageReaderSpi, ImageReader> readers;
+
+  private final KeyedPool<ImageWriterSpi, ImageWriter> writers;
+
+  private final KeyedPool<List<Integer>, BufferedImage> images;
+
+  private final KeyedPool<Class<?>, Buffer> buffers;
+
+  /**
+   * Creates a new pool.
+   *
+   * @param maxIdle the maximum number of idle readers and writers per provider, of idle images
+   *        per type and dimensions, and of idle output buffers
+   * @param maxImageSize the maximum total size of the idle images, in bytes
+   */
+  public ImagePool(int maxIdle, long maxImageSize) {
+    if (maxIdle < 0 || maxImageSize < 0) {
+      throw new IllegalArgumentException("Pool sizes must not be negative");
+    }
+    readers = new KeyedPool<>(maxIdle, Long.MAX_VALUE, reader -> 0, ImageReader::dispose);
+    writers = new KeyedPool<>(maxIdle, Long.MAX_VALUE, writer -> 0, ImageWriter::dispose);
+    images = new KeyedPool<>(maxIdle, maxImageSize, ImagePool::sizeOf, image -> {});
+    buffers = new KeyedPool<>(maxIdle, Long.MAX_VALUE, buffer -> 0, buffer -> {});
+  }
+
+  /**
+   * Returns the pool that is shared by all the image sources in the JVM.
+   *
+   * @return the default pool
+   */
+  public static ImagePool getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Returns a reader that can decode the given stream, with the stream as its input. The stream
+   * is left at its current position.
+   *
+   * @param iis the image input stream
+   * @return a reader for the stream
+   * @throws IOException if no reader supports the image format
+   */
+  public ImageReader borrowReader(ImageInputStream iis) throws IOException {
+    Iterator<ImageReaderSpi> providers =
+        IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true);
+    while (providers.hasNext()) {
+      ImageReaderSpi provider = providers.next();
+      if (provider.canDecodeInput(iis)) {
+        ImageReader reader = readers.poll(provider);
+        if (reader == null) {
+          reader = provider.createReaderInstance();
+        }
+        reader.setInput(iis, true, true);
+        return reader;
+      }
+    }
+    throw new IOException("Unsupported image format");
+  }
+
+  /**
+   * Returns a reader to the pool. The input of the reader is cleared.
+   *
+   * @param reader the reader
+   */
+  public void releaseReader(ImageReader reader) {
+    reader.reset();
+    readers.offer(reader.getOriginatingProvider(), reader);
+  }
+
+  /**
+   * Returns a writer for the given format.
+   *
+   * @param format the image format name, e.g. {@code "jpeg"}
+   * @return a writer for the format
+   * @throws IllegalArgumentException if no writer supports the format
+   */
+  public ImageWriter borrowWriter(String format) {
+    String name = format.toLowerCase(Locale.ENGLISH);
+    Iterator<ImageWriterSpi> providers =
+        IIORegistry.getDefaultInstance().getServiceProviders(ImageWriterSpi.class, true);
+    while (providers.hasNext()) {
+      ImageWriterSpi provider = providers.next();
+      if (Arrays.stream(provider.getFormatNames()).anyMatch(name::equalsIgnoreCase)) {
+        ImageWriter writer = writers.poll(provider);
+        if (writer == null) {
+          try {
+            writer = provider.createWriterInstance();
+          } catch (IOException e) {
+            continue;
+          }
+        }
+        return writer;
+      }
+    }
+    throw new IllegalArgumentException("No image writer for format " + format);
+  }
+
+  /**
+   * Returns a writer to the pool. The output of the writer is cleared.
+   *
+   * @param writer the writer
+   */
+  public void releaseWriter(ImageWriter writer) {
+    writer.reset();
+    writers.offer(writer.getOriginatingProvider(), writer);
+  }
+
+  /**
+   * Returns an image of the given type and dimensions. The content of a recycled image is
+   * undefined, so the caller must overwrite every pixel.
+   *
+   * @param type the image type, e.g. {@link BufferedImage#TYPE_INT_RGB}
+   * @param width the image width
+   * @param height the image height
+   * @return an image of the given type and dimensions
+   */
+  public BufferedImage borrowImage(int type, int width, int height) {
+    BufferedImage image = images.poll(Arrays.asList(type, width, height));
+    return image != null ? image : new BufferedImage(width, height, type);
+  }
+
+  /**
+   * Returns an image to the pool. Images of custom types are discarded.
+   *
+   * @param image the image, which must not be referenced anywhere else
+   */
+  public void releaseImage(BufferedImage image) {
+    if (image.getType() != BufferedImage.TYPE_CUSTOM) {
+      images.offer(Arrays.asList(image.getType(), image.getWidth(), image.getHeight()), image);
+    }
+  }
+
+  /**
+   * Returns an empty output buffer. The buffer must not be closed, so that it can be recycled.
+   *
+   * @return an empty output buffer
+   */
+  public Buffer borrowBuffer() {
+    Buffer buffer = buffers.poll(Buffer.class);
+    return buffer != null ? buffer : new Buffer();
+  }
+
+  /**
+   * Returns an output buffer to the pool. Buffers that grew too large are discarded.
+   *
+   * @param buffer the buffer
+   */
+  public void releaseBuffer(Buffer buffer) {
+    if (buffer.capacity() <= MAX_BUFFER_SIZE) {
+      buffer.clear();
+      buffers.offer(Buffer.class, buffer);
+    }
+  }
+
+  private static long sizeOf(BufferedImage image) {
+    DataBuffer data = image.getRaster().getDataBuffer();
+    return (long) data.getSize() * data.getNumBanks()
+        * DataBuffer.getDataTypeSize(data.getDataType()) / 8;
+  }
+
+  /**
+   * Bounded pool of idle objects, grouped by key. When the total weight of the idle objects
+   * exceeds the maximum, objects are evicted from the least recently used keys.
+   */
+  private static final class KeyedPool<K, V> {
+
+    private final Map<K, Deque<V>> idle = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxPerKey;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final Consumer<V> disposer;
+    private long weight;
+
+    KeyedPool(int maxPerKey, long maxWeight, ToLongFunction<V> weigher, Consumer<V> disposer) {
+      this.maxPerKey = maxPerKey;
+      this.maxWeight = maxWeight;
+      this.weigher = weigher;
+      this.disposer = disposer;
+    }
+
+    synchronized V poll(K key) {
+      Deque<V> values = idle.get(key);
+      if (values == null) {
+        return null;
+      }
+      V value = values.poll();
+      if (values.isEmpty()) {
+        idle.remove(key);
+      }
+      weight -= weigher.applyAsLong(value);
+      return value;
+    }
+
+    void offer(K key, V value) {
+      Objects.requireNonNull(key);
+      List<V> discarded = new ArrayList<>();
+      synchronized (this) {
+        long w = weigher.applyAsLong(value);
+        Deque<V> values = idle.computeIfAbsent(key, k -> new ArrayDeque<>());
+        if (values.size() >= maxPerKey || w > maxWeight) {
+          discarded.add(value);
+        } else {
+          values.push(value);
+          weight += w;
+        }
+        Iterator<Deque<V>> it = idle.values().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+          Deque<V> eldest = it.next();
+          while (weight > maxWeight && !eldest.isEmpty()) {
+            V evicted = eldest.pollLast();
+            weight -= weigher.applyAsLong(evicted);
+            discarded.add(evicted);
+          }
+          if (eldest.isEmpty()) {
+            it.remove();
+          }
+        }
+        if (values.isEmpty()) {
+          idle.remove(key, values);
+        }
+      }
+      discarded.forEach(disposer);
+    }
+  }
+
+}
@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import javax.imageio.ImageWriter;
+
+/**
+ * Utility methods for resampling and encoding server-side renditions of an image. Intermediate
+ * images, image writers and output buffers are taken from the
+ * {@linkplain ImagePool#getDefault() shared image pool}.
+ */
+public final class ImageResampler {
+
+  private ImageResampler() {}
+
+  /**
+   * Resamples a region of an image to the given dimensions. When shrinking by more than a factor
+   * of two, the image is halved repeatedly before the final step, which gives a much better
+   * result than a single bilinear pass.
+   *
+   * @param source the source image
+   * @param region the region of the source image to resample
+   * @param width the target width
+   * @param height the target height
+   * @param alpha whether the result should preserve the alpha channel
+   * @return the resampled image, which is never the source image and can be
+   *         {@linkplain ImagePool#releaseImage(BufferedImage) released} once it is no longer used
+   */
+  public static BufferedImage resample(BufferedImage source, Rectangle region, int width,
+      int height, boolean alpha) {
+    BufferedImage current = source;
+    Rectangle area = region;
+    while (area.width / 2 >= width && area.height / 2 >= height) {
+      int w = Math.max(width, area.width / 2);
+      int h = Math.max(height, area.height / 2);
+      current = step(source, current, area, w, h, alpha);
+      area = new Rectangle(0, 0, w, h);
+    }
+    if (current == source || area.width != width || area.height != height) {
+      current = step(source, current, area, width, height, alpha);
+    }
+    return current;
+  }
+
+  private static BufferedImage step(BufferedImage source, BufferedImage current, Rectangle region,
+      int width, int height, boolean alpha) {
+    BufferedImage next = draw(current, region, width, height, alpha);
+    if (current != source) {
+      ImagePool.getDefault().releaseImage(current);
+    }
+    return next;
+  }
+
+  private static BufferedImage draw(BufferedImage source, Rectangle region, int width,
+      int height, boolean alpha) {
+    BufferedImage target = ImagePool.getDefault().borrowImage(
+        alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB, width, height);
+    Graphics2D g = target.createGraphics();
+    try {
+      // replace the previous content of a recycled image, instead of blending with it
+      g.setComposite(AlphaComposite.Src);
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+          RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      g.drawImage(source, 0, 0, width, height, region.x, region.y, region.x + region.width,
+          region.y + region.height, null);
+    } finally {
+      g.dispose();
+    }
+    return target;
+  }
+
+  /**
+   * Returns whether the given format supports an alpha channel.
+   *
+   * @param format the image format name, e.g. {@code "png"}
+   * @return true if the format supports transparency
+   */
+  public static boolean supportsAlpha(String format) {
+    String name = format.toLowerCase(Locale.ENGLISH);
+    return !name.equals("jpeg") && !name.equals("jpg") && !name.equals("bmp");
+  }
+
+  /**
+   * Encodes an image in the given format.
+   *
+   * @param image the image to encode
+   * @param format the image format name, e.g. {@code "jpeg"}
+   * @return the encoded image
+   */
+  public static byte[] encode(BufferedImage image, String format) {
+    ImagePool pool = ImagePool.getDefault();
+    ImageWriter writer = pool.borrowWriter(format);
+    ImagePool.Buffer buffer = pool.borrowBuffer();
+    try {
+      // the writer writes straight into the recycled array, which is copied once to the result
+      writer.setOutput(buffer);
+      writer.write(image);
+      return buffer.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      pool.releaseWriter(writer);
+      pool.releaseBuffer(buffer);
+    }
+  }
+
+}
@@ -0,0 +1,431 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates every tile of a {@link TilePyramid} in parallel.
+ * <p>
+ * Only the full resolution level is read from the source, in blocks of up to 2048 pixels that
+ * are cut into tiles. Each tile of the following levels is then downsampled from the 2x2 tiles
+ * below it, so that every source pixel is read once. The pyramid is traversed depth-first by
+ * fork/join tasks that run in a {@link ForkJoinPool} (the common pool by default), and a tile is
+ * released as soon as the tile above it has been generated.
+ * </p>
+ * <p>
+ * Writing the encoded tiles is I/O-bound, so it is handed over to a separate executor, which
+ * uses virtual threads when the runtime supports them. The number of encoded tiles waiting to be
+ * written is bounded, so that a slow sink does not fill the heap. If a tile cannot be generated
+ * or written, the remaining tiles are skipped.
+ * </p>
+ */
+public final class PyramidBuilder {
+
+  /** Maximum width and height of the full resolution region that is read at once. */
+  private static final int BLOCK_SIZE = 2048;
+
+  /** Maximum number of encoded tiles waiting to be written. */
+  private static final int MAX_PENDING_WRITES = 64;
+
+  /**
+   * Reads a region of the source image.
+   */
+  @FunctionalInterface
+  public interface Source {
+    /**
+     * Reads a region of the source image, resampled to the given dimensions. The returned image
+     * is {@linkplain ImagePool#releaseImage(BufferedImage) recycled} once it has been processed, so
+     * it must not be referenced anywhere else.
+     *
+     * @param region the region, in pixels of the full resolution image
+     * @param width the target width
+     * @param height the target height
+     * @return the resampled region
+     * @throws IOException if the source image cannot be read
+     */
+    BufferedImage read(Rectangle region, int width, int height) throws IOException;
+  }
+
+  /**
+   * Receives the encoded tiles. Tiles are written concurrently from several threads.
+   */
+  @FunctionalInterface
+  public interface TileSink {
+    /**
+     * Writes an encoded tile.
+     *
+     * @param level the pyramid level
+     * @param column the tile column
+     * @param row the tile row
+     * @param data the encoded tile
+     * @throws IOException if the tile cannot be written
+     */
+    void write(int level, int column, int row, byte[] data) throws IOException;
+  }
+
+  /**
+   * Receives progress notifications. Notifications are sent concurrently from several threads.
+   */
+  @FunctionalInterface
+  public interface ProgressListener {
+    /**
+     * Called after a tile has been written.
+     *
+     * @param completed the number of tiles written so far
+     * @param total the total number of tiles
+     */
+    void onProgress(int completed, int total);
+  }
+
+  private final TilePyramid pyramid;
+
+  private final Source source;
+
+  private final String format;
+
+  private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+  private ExecutorService ioExecutor;
+
+  private ProgressListener progressListener = (completed, total) -> {};
+
+  /**
+   * Creates a new builder.
+   *
+   * @param pyramid the geometry of the pyramid
+   * @param source the source image
+   * @param format the format of the encoded tiles
+   */
+  public PyramidBuilder(TilePyramid pyramid, Source source, String format) {
+    this.pyramid = Objects.requireNonNull(pyramid);
+    this.source = Objects.requireNonNull(source);
+    this.format = Objects.requireNonNull(format);
+  }
+
+  /**
+   * Returns a source that resamples an image that is already in memory.
+   *
+   * @param image the source image
+   * @param alpha whether the alpha channel is preserved
+   * @return the source
+   */
+  public static Source of(BufferedImage image, boolean alpha) {
+    return (region, width, height) -> ImageResampler.resample(image, region, width, height,
+        alpha);
+  }
+
+  /**
+   * Sets the pool in which tiles are resampled and encoded.
+   *
+   * @param pool the fork/join pool
+   * @return this builder
+   */
+  public PyramidBuilder setPool(ForkJoinPool pool) {
+    this.pool = Objects.requireNonNull(pool);
+    return this;
+  }
+
+  /**
+   * Sets the executor in which encoded tiles are written. The executor is not shut down by the
+   * builder. By default, a new executor is created for each build, with one virtual thread per
+   * write if the runtime supports virtual threads.
+   *
+   * @param ioExecutor the executor for tile writes
+   * @return this builder
+   */
+  public PyramidBuilder setIoExecutor(ExecutorService ioExecutor) {
+    this.ioExecutor = ioExecutor;
+    return this;
+  }
+
+  /**
+   * Sets the listener that is notified as tiles are written.
+   *
+   * @param progressListener the progress listener
+   * @return this builder
+   */
+  public PyramidBuilder setProgressListener(ProgressListener progressListener) {
+    this.progressListener = Objects.requireNonNull(progressListener);
+    return this;
+  }
+
+  /**
+   * Returns the total number of tiles in the pyramid.
+   *
+   * @return the number of tiles
+   */
+  public int getTileCount() {
+    int count = 0;
+    for (int level = 0; level < pyramid.getLevels(); level++) {
+      count += pyramid.getColumns(level) * pyramid.getRows(level);
+    }
+    return count;
+  }
+
+  /**
+   * Generates all the tiles of the pyramid and writes them to the sink. This method returns once
+   * every tile has been written.
+   *
+   * @param sink the receiver of the encoded tiles
+   * @throws IOException if the source cannot be read or a tile cannot be written
+   */
+  public void build(TileSink sink) throws IOException {
+    ExecutorService executor = ioExecutor != null ? ioExecutor : newIoExecutor();
+    Build build = new Build(sink, executor);
+    try {
+      int top = pyramid.getLevels() - 1;
+      ImagePool.getDefault().releaseImage(pool.invoke(build.new TileTask(top, 0, 0, null, null)));
+    } catch (RuntimeException e) {
+      // the failure was recorded by the task that raised it, or by a failed write
+      build.fail(e);
+    } finally {
+      build.awaitWrites();
+      if (executor != ioExecutor) {
+        executor.shutdown();
+      }
+    }
+    build.rethrowFailure();
+  }
+
+  /**
+   * Returns an executor that runs each task in a new virtual thread, if the runtime supports
+   * virtual threads, or in a pool of platform threads otherwise.
+   *
+   * @return a new executor
+   */
+  public static ExecutorService newIoExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2, r -> {
+        Thread thread = new Thread(r, "zoomist-tile-writer");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  private final class Build {
+
+    private final TileSink sink;
+    private final ExecutorService executor;
+    private final boolean alpha = ImageResampler.supportsAlpha(format);
+    private final int total = getTileCount();
+    private final Semaphore pendingWrites = new Semaphore(MAX_PENDING_WRITES);
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    Build(TileSink sink, ExecutorService executor) {
+      this.sink = sink;
+      this.executor = executor;
+    }
+
+    void fail(Throwable t) {
+      Throwable cause = t instanceof UncheckedIOException ? t.getCause() : t;
+      failure.compareAndSet(null, cause);
+    }
+
+    void rethrowFailure() throws IOException {
+      Throwable t = failure.get();
+      if (t instanceof IOException) {
+        throw (IOException) t;
+      } else if (t instanceof RuntimeException) {
+        throw (RuntimeException) t;
+      } else if (t instanceof Error) {
+        throw (Error) t;
+      }
+    }
+
+    /** Waits until every pending write has completed, by taking all the write permits. */
+    void awaitWrites() throws InterruptedIOException {
+      try {
+        pendingWrites.acquire(MAX_PENDING_WRITES);
+        pendingWrites.release(MAX_PENDING_WRITES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+
+    private void write(int level, int column, int row, BufferedImage image)
+        throws InterruptedException {
+      byte[] data = ImageResampler.encode(image, format);
+      ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+        @Override
+        public boolean block() throws InterruptedException {
+          pendingWrites.acquire();
+          return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+          return pendingWrites.tryAcquire();
+        }
+      });
+      executor.execute(() -> {
+        try {
+          if (failure.get() == null) {
+            sink.write(level, column, row, data);
+            progressListener.onProgress(completed.incrementAndGet(), total);
+          }
+        } catch (IOException | RuntimeException e) {
+          fail(e);
+        } finally {
+          pendingWrites.release();
+        }
+      });
+    }
+
+    /**
+     * Generates a tile and the tiles below it, and returns the tile image. Full resolution tiles
+     * are cut from the block that was read by an ancestor task, if any.
+     */
+    @SuppressWarnings("serial")
+    private final class TileTask extends RecursiveTask<BufferedImage> {
+
+      private final int level;
+      private final int column;
+      private final int row;
+      private final BufferedImage block;
+      private final Rectangle blockRegion;
+
+      TileTask(int level, int column, int row, BufferedImage block, Rectangle blockRegion) {
+        this.level = level;
+        this.column = column;
+        this.row = row;
+        this.block = block;
+        this.blockRegion = blockRegion;
+      }
+
+      @Override
+      protected BufferedImage compute() {
+        if (failure.get() != null) {
+          throw new CancellationException();
+        }
+        try {
+          BufferedImage image = render();
+          write(level, column, row, image);
+          return image;
+        } catch (IOException e) {
+          fail(e);
+          throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          InterruptedIOException cause = new InterruptedIOException();
+          fail(cause);
+          throw new UncheckedIOException(cause);
+        } catch (RuntimeException e) {
+          fail(e);
+          throw e;
+        }
+      }
+
+      private BufferedImage render() throws IOException {
+        if (level == 0) {
+          Rectangle bounds = pyramid.getTileBounds(0, column, row);
+          if (block == null) {
+            return source.read(bounds, bounds.width, bounds.height);
+          }
+          return block.getSubimage(bounds.x - blockRegion.x, bounds.y - blockRegion.y,
+              bounds.width, bounds.height);
+        }
+        if (block == null && ((long) pyramid.getTileSize() << level) <= BLOCK_SIZE) {
+          Rectangle region = pyramid.getSourceRegion(level, column, row);
+          BufferedImage image = source.read(region, region.width, region.height);
+          try {
+            return downsample(image, region);
+          } finally {
+            ImagePool.getDefault().releaseImage(image);
+          }
+        }
+        return downsample(block, blockRegion);
+      }
+
+      /** Generates the 2x2 tiles below this one, and downsamples them into this tile. */
+      private BufferedImage downsample(BufferedImage block, Rectangle blockRegion) {
+        List<TileTask> children = new ArrayList<>(4);
+        for (int y = 0; y < 2; y++) {
+          for (int x = 0; x < 2; x++) {
+            if (pyramid.contains(level - 1, column * 2 + x, row * 2 + y)) {
+              children.add(new TileTask(level - 1, column * 2 + x, row * 2 + y, block,
+                  blockRegion));
+            }
+          }
+        }
+        invokeAll(children);
+
+        ImagePool imagePool = ImagePool.getDefault();
+        Rectangle first = pyramid.getTileBounds(level - 1, column * 2, row * 2);
+        int width = 0;
+        int height = 0;
+        for (TileTask child : children) {
+          Rectangle bounds = pyramid.getTileBounds(child.level, child.column, child.row);
+          width = Math.max(width, bounds.x + bounds.width - first.x);
+          height = Math.max(height, bounds.y + bounds.height - first.y);
+        }
+        BufferedImage canvas = imagePool.borrowImage(
+            alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB, width, height);
+        Graphics2D g = canvas.createGraphics();
+        try {
+          g.setComposite(AlphaComposite.Src);
+          for (TileTask child : children) {
+            Rectangle bounds = pyramid.getTileBounds(child.level, child.column, child.row);
+            BufferedImage image = child.join();
+            g.drawImage(image, bounds.x - first.x, bounds.y - first.y, null);
+            // tiles cut from a block share its raster, and are released with the block
+            if (child.level > 0 || block == null) {
+              imagePool.releaseImage(image);
+            }
+          }
+        } finally {
+          g.dispose();
+        }
+
+        Rectangle bounds = pyramid.getTileBounds(level, column, row);
+        try {
+          return ImageResampler.resample(canvas, new Rectangle(0, 0, width, height),
+              bounds.width, bounds.height, alpha);
+        } finally {
+          imagePool.releaseImage(canvas);
+        }
+      }
+    }
+  }
+
+}
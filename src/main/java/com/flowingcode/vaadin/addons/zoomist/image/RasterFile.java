@@ -0,0 +1,451 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import lombok.Getter;
+
+/**
+ * Uncompressed copy of a source image on disk, from which regions are cut without decoding.
+ * <p>
+ * The source image is {@linkplain #convert(RegionDecoder.Source, File, String) converted} once,
+ * by decoding it in a single pass straight into the memory-mapped file, so that it is never
+ * completely held in memory. The raster
+ * file stores the pixels as interleaved bytes ({@code BGR}, or {@code ABGR} if the source has an
+ * alpha channel), followed by successive halvings of the image down to 256 pixels, so that small
+ * renditions of a huge image do not scan the full resolution pixels.
+ * </p>
+ * <p>
+ * The file is memory-mapped when it is opened, and closed right after it has been mapped.
+ * Reading a region copies its rows from the mapped level that is closest to the requested size,
+ * and resamples them.
+ * </p>
+ */
+public final class RasterFile {
+
+  private static final int MAGIC = 0x5a4d5246; // "ZMRF"
+
+  private static final int VERSION = 1;
+
+  /** Size of the header, which is followed by the pixels of each level. */
+  private static final int HEADER_SIZE = 4096;
+
+  /** Maximum size of each mapped segment. Segments contain whole rows. */
+  private static final long SEGMENT_SIZE = 1L << 30;
+
+  /** Width and height below which no further level is stored. */
+  private static final int MIN_LEVEL_SIZE = 256;
+
+  /** Maximum number of pixels that are decoded at once during the conversion. */
+  private static final int BAND_PIXELS = 16 * 1024 * 1024;
+
+  @Getter
+  private final int width;
+
+  @Getter
+  private final int height;
+
+  @Getter
+  private final String sourceId;
+
+  private final int bands;
+
+  private final Level[] levels;
+
+  private RasterFile(int width, int height, int bands, String sourceId, Level[] levels) {
+    this.width = width;
+    this.height = height;
+    this.bands = bands;
+    this.sourceId = sourceId;
+    this.levels = levels;
+  }
+
+  /**
+   * Returns whether the raster keeps the alpha channel of the source image.
+   *
+   * @return true if the raster has an alpha channel
+   */
+  public boolean hasAlpha() {
+    return bands == 4;
+  }
+
+  /**
+   * Returns the number of stored levels, including the full resolution level.
+   *
+   * @return the number of levels
+   */
+  public int getLevels() {
+    return levels.length;
+  }
+
+  /**
+   * Converts a source image into a raster file. The file is written to a temporary file, which
+   * replaces the given file once it is complete.
+   *
+   * @param source the source of the encoded image
+   * @param file the raster file
+   * @param sourceId a string that uniquely identifies the source image, which is stored in the
+   *        raster file so that stale copies can be detected
+   * @return the opened raster file
+   * @throws IOException if the image cannot be read or the raster file cannot be written
+   */
+  public static RasterFile convert(RegionDecoder.Source source, File file, String sourceId)
+      throws IOException {
+    Path target = file.toPath().toAbsolutePath();
+    Files.createDirectories(target.getParent());
+    Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    ImagePool pool = ImagePool.getDefault();
+    try {
+      try (ImageInputStream iis = source.open();
+          FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ,
+              StandardOpenOption.WRITE)) {
+        ImageReader reader = pool.borrowReader(iis);
+        Level[] levels;
+        int bands;
+        try {
+          int width = reader.getWidth(0);
+          int height = reader.getHeight(0);
+          Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+          ImageTypeSpecifier type = types.hasNext() ? types.next() : null;
+          bands = type != null && type.getColorModel().hasAlpha() ? 4 : 3;
+
+          levels = map(channel, MapMode.READ_WRITE, width, height, bands);
+          Level last = levels[levels.length - 1];
+          long size = last.offset + (long) last.rowBytes * last.height;
+          channel.write(ByteBuffer.allocate(1), size - 1);
+          channel.write(ByteBuffer.wrap(writeHeader(width, height, bands, sourceId)), 0);
+          decode(reader, type != null ? type.getBufferedImageType() : BufferedImage.TYPE_CUSTOM,
+              levels[0]);
+        } finally {
+          pool.releaseReader(reader);
+        }
+        for (int level = 1; level < levels.length; level++) {
+          downsample(levels[level - 1], levels[level], bands);
+        }
+        for (Level level : levels) {
+          level.force();
+        }
+      }
+      try {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    return open(file);
+  }
+
+  /**
+   * Decodes the image into the full resolution level. If the reader decodes to the same pixel
+   * layout as the raster, it writes straight into the mapped file in a single pass over the
+   * source. Otherwise, the image is decoded and converted in horizontal bands by the same reader.
+   */
+  private static void decode(ImageReader reader, int readerType, Level level) throws IOException {
+    int type = level.bands == 4 ? BufferedImage.TYPE_4BYTE_ABGR : BufferedImage.TYPE_3BYTE_BGR;
+    if (readerType == type && (long) level.rowBytes * level.height <= Integer.MAX_VALUE) {
+      ImageReadParam param = reader.getDefaultReadParam();
+      param.setDestination(level.toImage(type));
+      reader.read(0, param);
+      return;
+    }
+
+    ImagePool pool = ImagePool.getDefault();
+    int bandRows = Math.max(1, BAND_PIXELS / level.width);
+    for (int y = 0; y < level.height; y += bandRows) {
+      Rectangle band = new Rectangle(0, y, level.width, Math.min(bandRows, level.height - y));
+      ImageReadParam param = reader.getDefaultReadParam();
+      param.setSourceRegion(band);
+      if (readerType != BufferedImage.TYPE_CUSTOM) {
+        param.setDestination(pool.borrowImage(readerType, band.width, band.height));
+      }
+      BufferedImage image = reader.read(0, param);
+      BufferedImage pixels = toInterleaved(image, type);
+      byte[] data = ((DataBufferByte) pixels.getRaster().getDataBuffer()).getData();
+      for (int row = 0; row < band.height; row++) {
+        level.putRow(y + row, data, row * level.rowBytes);
+      }
+      pool.releaseImage(pixels);
+      if (pixels != image) {
+        pool.releaseImage(image);
+      }
+    }
+  }
+
+  /**
+   * Opens a raster file.
+   *
+   * @param file the raster file
+   * @return the opened raster file
+   * @throws IOException if the file cannot be read or is not a raster file
+   */
+  public static RasterFile open(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      for (long p = 0; header.hasRemaining();) {
+        int n = channel.read(header, p);
+        if (n < 0) {
+          throw new IOException("Not a raster file: " + file);
+        }
+        p += n;
+      }
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(header.array()));
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a raster file: " + file);
+      }
+      if (in.readInt() != VERSION) {
+        throw new IOException("Unsupported raster file version: " + file);
+      }
+      int width = in.readInt();
+      int height = in.readInt();
+      int bands = in.readInt();
+      String sourceId = in.readUTF();
+      Level[] levels = map(channel, MapMode.READ_ONLY, width, height, bands);
+      Level last = levels[levels.length - 1];
+      if (channel.size() < last.offset + (long) last.rowBytes * last.height) {
+        throw new IOException("Truncated raster file: " + file);
+      }
+      return new RasterFile(width, height, bands, sourceId, levels);
+    }
+  }
+
+  /**
+   * Reads a region of the image, resampled to the given dimensions.
+   *
+   * @param region the region, in pixels of the full resolution image
+   * @param width the target width
+   * @param height the target height
+   * @param alpha whether the result should preserve the alpha channel
+   * @return the resampled region, which can be
+   *         {@linkplain ImagePool#releaseImage(BufferedImage) released} once it is no longer used
+   */
+  public BufferedImage read(Rectangle region, int width, int height, boolean alpha) {
+    int index = 0;
+    while (index + 1 < levels.length && (region.width >> (index + 1)) >= width
+        && (region.height >> (index + 1)) >= height) {
+      index++;
+    }
+    Level level = levels[index];
+    int x0 = Math.min(region.x >> index, level.width - 1);
+    int y0 = Math.min(region.y >> index, level.height - 1);
+    int x1 = Math.min(level.width, (int) ((region.x + (long) region.width + (1L << index) - 1)
+        >> index));
+    int y1 = Math.min(level.height, (int) ((region.y + (long) region.height + (1L << index) - 1)
+        >> index));
+    int w = Math.max(1, x1 - x0);
+    int h = Math.max(1, y1 - y0);
+
+    ImagePool pool = ImagePool.getDefault();
+    BufferedImage copy = pool.borrowImage(
+        bands == 4 ? BufferedImage.TYPE_4BYTE_ABGR : BufferedImage.TYPE_3BYTE_BGR, w, h);
+    try {
+      byte[] data = ((DataBufferByte) copy.getRaster().getDataBuffer()).getData();
+      for (int row = 0; row < h; row++) {
+        level.getRow(y0 + row, x0 * bands, data, row * w * bands, w * bands);
+      }
+      return ImageResampler.resample(copy, new Rectangle(0, 0, w, h), width, height, alpha);
+    } finally {
+      pool.releaseImage(copy);
+    }
+  }
+
+  private static byte[] writeHeader(int width, int height, int bands, String sourceId)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(width);
+    out.writeInt(height);
+    out.writeInt(bands);
+    out.writeUTF(sourceId);
+    if (bytes.size() > HEADER_SIZE) {
+      throw new IOException("Source id is too long");
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Level[] map(FileChannel channel, MapMode mode, int width, int height, int bands)
+      throws IOException {
+    int count = 1;
+    for (int size = Math.max(width, height); size > MIN_LEVEL_SIZE; size = (size + 1) / 2) {
+      count++;
+    }
+    Level[] levels = new Level[count];
+    long offset = HEADER_SIZE;
+    int w = width;
+    int h = height;
+    for (int i = 0; i < count; i++) {
+      levels[i] = new Level(channel, mode, offset, w, h, bands);
+      offset += (long) levels[i].rowBytes * h;
+      w = (w + 1) / 2;
+      h = (h + 1) / 2;
+    }
+    return levels;
+  }
+
+  /**
+   * Returns the image itself if its pixels are stored as contiguous interleaved bytes of the
+   * given type, or a recycled copy of it otherwise.
+   */
+  private static BufferedImage toInterleaved(BufferedImage image, int type) {
+    if (image.getType() == type && image.getRaster().getParent() == null
+        && image.getRaster().getSampleModel() instanceof ComponentSampleModel
+        && ((ComponentSampleModel) image.getRaster().getSampleModel()).getScanlineStride()
+            == image.getWidth() * image.getRaster().getNumBands()
+        && ((DataBufferByte) image.getRaster().getDataBuffer()).getOffset() == 0) {
+      return image;
+    }
+    BufferedImage copy =
+        ImagePool.getDefault().borrowImage(type, image.getWidth(), image.getHeight());
+    Graphics2D g = copy.createGraphics();
+    try {
+      g.setComposite(AlphaComposite.Src);
+      g.drawImage(image, 0, 0, null);
+    } finally {
+      g.dispose();
+    }
+    return copy;
+  }
+
+  /**
+   * Computes a level from the previous one, by averaging blocks of 2x2 pixels.
+   */
+  private static void downsample(Level source, Level target, int bands) {
+    byte[] upper = new byte[source.rowBytes];
+    byte[] lower = new byte[source.rowBytes];
+    byte[] row = new byte[target.rowBytes];
+    for (int y = 0; y < target.height; y++) {
+      source.getRow(2 * y, 0, upper, 0, source.rowBytes);
+      source.getRow(Math.min(2 * y + 1, source.height - 1), 0, lower, 0, source.rowBytes);
+      for (int x = 0; x < target.width; x++) {
+        int left = 2 * x * bands;
+        int right = Math.min(2 * x + 1, source.width - 1) * bands;
+        for (int b = 0; b < bands; b++) {
+          int sum = (upper[left + b] & 0xff) + (upper[right + b] & 0xff)
+              + (lower[left + b] & 0xff) + (lower[right + b] & 0xff);
+          row[x * bands + b] = (byte) ((sum + 2) >> 2);
+        }
+      }
+      target.putRow(y, row, 0);
+    }
+  }
+
+  /** A level of the raster, mapped in segments of whole rows. */
+  private static final class Level {
+
+    private final long offset;
+    private final int width;
+    private final int height;
+    private final int bands;
+    private final int rowBytes;
+    private final int rowsPerSegment;
+    private final MappedByteBuffer[] segments;
+
+    Level(FileChannel channel, MapMode mode, long offset, int width, int height, int bands)
+        throws IOException {
+      this.offset = offset;
+      this.width = width;
+      this.height = height;
+      this.bands = bands;
+      rowBytes = width * bands;
+      rowsPerSegment = (int) Math.min(height, SEGMENT_SIZE / rowBytes);
+      segments = new MappedByteBuffer[(height + rowsPerSegment - 1) / rowsPerSegment];
+      for (int i = 0; i < segments.length; i++) {
+        int rows = Math.min(rowsPerSegment, height - i * rowsPerSegment);
+        segments[i] = channel.map(mode, offset + (long) i * rowsPerSegment * rowBytes,
+            (long) rows * rowBytes);
+      }
+    }
+
+    void getRow(int y, int from, byte[] dst, int dstOffset, int length) {
+      segments[y / rowsPerSegment].get((y % rowsPerSegment) * rowBytes + from, dst, dstOffset,
+          length);
+    }
+
+    void putRow(int y, byte[] src, int srcOffset) {
+      segments[y / rowsPerSegment].put((y % rowsPerSegment) * rowBytes, src, srcOffset,
+          rowBytes);
+    }
+
+    /**
+     * Returns an image whose pixels are the mapped bytes of this level, which must be smaller
+     * than 2 GiB.
+     */
+    BufferedImage toImage(int type) {
+      int segmentBytes = rowsPerSegment * rowBytes;
+      DataBuffer buffer = new DataBuffer(DataBuffer.TYPE_BYTE, rowBytes * height) {
+        @Override
+        public int getElem(int bank, int i) {
+          return segments[i / segmentBytes].get(i % segmentBytes) & 0xff;
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+          segments[i / segmentBytes].put(i % segmentBytes, (byte) val);
+        }
+      };
+      int[] offsets = bands == 4 ? new int[] {3, 2, 1, 0} : new int[] {2, 1, 0};
+      WritableRaster raster = Raster.createWritableRaster(new PixelInterleavedSampleModel(
+          DataBuffer.TYPE_BYTE, width, height, bands, rowBytes, offsets), buffer, null);
+      ColorModel colorModel = new BufferedImage(1, 1, type).getColorModel();
+      return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    void force() {
+      for (MappedByteBuffer segment : segments) {
+        segment.force();
+      }
+    }
+  }
+
+}
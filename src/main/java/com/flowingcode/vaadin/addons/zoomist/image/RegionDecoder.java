@@ -0,0 +1,114 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodes a region of an image without materializing the whole raster. The region is read with
+ * {@link ImageReadParam#setSourceRegion(Rectangle) source region} and
+ * {@link ImageReadParam#setSourceSubsampling(int, int, int, int) subsampling} parameters, so that
+ * the memory used by a request is proportional to the size of the output, not to the size of the
+ * image.
+ * <p>
+ * Formats that are stored in tiles or strips (such as TIFF) only read the data that intersects
+ * the region; other formats (such as JPEG) still scan the image, but discard the pixels outside
+ * the region as they are decoded.
+ * </p>
+ */
+public final class RegionDecoder {
+
+  /**
+   * Opens a new stream of the encoded image.
+   */
+  @FunctionalInterface
+  public interface Source {
+    /**
+     * Opens the stream. The caller closes it.
+     *
+     * @return a new image input stream
+     * @throws IOException if the stream cannot be opened
+     */
+    ImageInputStream open() throws IOException;
+  }
+
+  private RegionDecoder() {}
+
+  /**
+   * Decodes a region of an image, subsampled to at least the given dimensions. The result is
+   * between one and two times as large as the target dimensions along each axis, so that it can
+   * then be resampled to the exact size with good quality.
+   *
+   * @param source the source of the encoded image
+   * @param region the region of the image, in pixels of the full resolution image
+   * @param width the target width
+   * @param height the target height
+   * @return the decoded region, which can be
+   *         {@linkplain ImagePool#releaseImage(BufferedImage) released} once it is no longer used
+   * @throws IOException if the image cannot be read
+   */
+  public static BufferedImage decode(Source source, Rectangle region, int width, int height)
+      throws IOException {
+    ImagePool pool = ImagePool.getDefault();
+    try (ImageInputStream iis = source.open()) {
+      ImageReader reader = pool.borrowReader(iis);
+      try {
+        Rectangle bounds = region.intersection(
+            new Rectangle(0, 0, reader.getWidth(0), reader.getHeight(0)));
+        int periodX = getSubsampling(bounds.width, width);
+        int periodY = getSubsampling(bounds.height, height);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(bounds);
+        param.setSourceSubsampling(periodX, periodY, 0, 0);
+
+        // decode into a recycled image of the same type, that is completely overwritten
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        int type = types.hasNext() ? types.next().getBufferedImageType()
+            : BufferedImage.TYPE_CUSTOM;
+        if (type != BufferedImage.TYPE_CUSTOM) {
+          param.setDestination(pool.borrowImage(type, (bounds.width + periodX - 1) / periodX,
+              (bounds.height + periodY - 1) / periodY));
+        }
+        return reader.read(0, param);
+      } finally {
+        pool.releaseReader(reader);
+      }
+    }
+  }
+
+  /**
+   * Returns the largest subsampling period that keeps at least the target number of pixels.
+   *
+   * @param size the size of the region
+   * @param target the target size
+   * @return the subsampling period
+   */
+  public static int getSubsampling(int size, int target) {
+    return Math.max(1, size / Math.max(1, target));
+  }
+
+}
@@ -0,0 +1,116 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives requests for renditions that are being displayed priority over speculative requests for
+ * renditions that the client expects to display soon.
+ * <p>
+ * Speculative requests are only admitted while no visible request is in progress, and only up to
+ * a fixed number at a time, so that prefetching never delays on-screen content. Rejected requests
+ * are expected to be retried by the client later. The {@linkplain #getDefault() default instance}
+ * is shared by all the image sources in the JVM; its limit is given by the
+ * {@code zoomist.prefetch.concurrency} system property (1 by default).
+ * </p>
+ */
+public final class RenderScheduler {
+
+  private static final RenderScheduler DEFAULT =
+      new RenderScheduler(Integer.getInteger("zoomist.prefetch.concurrency", 1));
+
+  private final AtomicInteger visible = new AtomicInteger();
+
+  private final Semaphore speculative;
+
+  /**
+   * Creates a new scheduler.
+   *
+   * @param maxSpeculative the maximum number of speculative requests in progress at a time
+   */
+  public RenderScheduler(int maxSpeculative) {
+    if (maxSpeculative < 0) {
+      throw new IllegalArgumentException("maxSpeculative must not be negative");
+    }
+    speculative = new Semaphore(maxSpeculative);
+  }
+
+  /**
+   * Returns the scheduler shared by all the image sources.
+   *
+   * @return the default scheduler
+   */
+  public static RenderScheduler getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Marks the beginning of a visible request. Every call must be paired with a call to
+   * {@link #endVisible()}.
+   */
+  public void beginVisible() {
+    visible.incrementAndGet();
+  }
+
+  /**
+   * Marks the end of a visible request.
+   */
+  public void endVisible() {
+    visible.decrementAndGet();
+  }
+
+  /**
+   * Admits a speculative request, if no visible request is in progress and the limit of
+   * speculative requests has not been reached. If this method returns true, the call must be
+   * paired with a call to {@link #endSpeculative()}.
+   *
+   * @return true if the request was admitted
+   */
+  public boolean tryBeginSpeculative() {
+    if (visible.get() > 0 || !speculative.tryAcquire()) {
+      return false;
+    }
+    if (visible.get() > 0) {
+      // a visible request arrived in the meantime
+      speculative.release();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Marks the end of an admitted speculative request.
+   */
+  public void endSpeculative() {
+    speculative.release();
+  }
+
+  /**
+   * Returns the number of visible requests in progress.
+   *
+   * @return the number of visible requests
+   */
+  public int getVisibleCount() {
+    return visible.get();
+  }
+
+}
@@ -0,0 +1,266 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.Getter;
+
+/**
+ * In-memory cache of encoded renditions, bounded by the total size in bytes of the cached data
+ * and with least-recently-used eviction.
+ * <p>
+ * A single {@linkplain #getDefault() default instance} is shared by all the image sources in the
+ * JVM, so that a rendition generated for one session is reused by every other session that
+ * displays the same image. Its initial capacity is given by the {@code zoomist.cache.size}
+ * system property (in bytes, 64 MB by default).
+ * </p>
+ * <p>
+ * Concurrent requests for a rendition that is not cached are coalesced, so that it is generated
+ * only once and the other callers wait for the result.
+ * </p>
+ */
+public final class RenditionCache {
+
+  private static final long DEFAULT_SIZE = 64L * 1024 * 1024;
+
+  private static final RenditionCache DEFAULT =
+      new RenditionCache(Long.getLong("zoomist.cache.size", DEFAULT_SIZE));
+
+  /**
+   * Loads a rendition that is not present in the cache.
+   */
+  @FunctionalInterface
+  public interface Loader {
+    /**
+     * Generates the encoded rendition.
+     *
+     * @return the rendition
+     * @throws IOException if the rendition cannot be generated
+     */
+    byte[] load() throws IOException;
+  }
+
+  /**
+   * Snapshot of the cache statistics.
+   */
+  @Getter
+  public static final class Stats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+    private final int entryCount;
+
+    private Stats(long hitCount, long missCount, long evictionCount, long size, int entryCount) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.size = size;
+      this.entryCount = entryCount;
+    }
+
+    /**
+     * Returns the ratio of lookups that were served from the cache.
+     *
+     * @return the hit rate, or 1 if there were no lookups
+     */
+    public double getHitRate() {
+      long requests = hitCount + missCount;
+      return requests == 0 ? 1 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+      return "Stats[hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount
+          + ", size=" + size + ", entries=" + entryCount + "]";
+    }
+  }
+
+  private final Map<RenditionKey, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final SingleFlight<RenditionKey, byte[]> loads = new SingleFlight<>();
+
+  private long maximumSize;
+  private long size;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param maximumSize the maximum total size of the cached renditions, in bytes
+   */
+  public RenditionCache(long maximumSize) {
+    setMaximumSize(maximumSize);
+  }
+
+  /**
+   * Returns the cache that is shared by all the image sources in the JVM.
+   *
+   * @return the default cache
+   */
+  public static RenditionCache getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Sets the maximum total size of the cached renditions. Entries are evicted if the current size
+   * exceeds the new maximum.
+   *
+   * @param maximumSize the maximum size in bytes
+   */
+  public synchronized void setMaximumSize(long maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("Maximum size must not be negative");
+    }
+    this.maximumSize = maximumSize;
+    evict();
+  }
+
+  /**
+   * Returns the maximum total size of the cached renditions.
+   *
+   * @return the maximum size in bytes
+   */
+  public synchronized long getMaximumSize() {
+    return maximumSize;
+  }
+
+  /**
+   * Returns the cached rendition for the given key.
+   *
+   * @param key the rendition key
+   * @return the cached rendition, or {@code null} if it is not in the cache
+   */
+  public synchronized byte[] getIfPresent(RenditionKey key) {
+    byte[] data = entries.get(key);
+    if (data != null) {
+      hitCount++;
+    } else {
+      missCount++;
+    }
+    return data;
+  }
+
+  /**
+   * Returns the cached rendition for the given key, loading it if it is not in the cache. If the
+   * rendition is already being loaded by another thread, waits for that load instead.
+   *
+   * @param key the rendition key
+   * @param loader the loader that generates the rendition
+   * @return the rendition
+   * @throws IOException if the loader fails
+   */
+  public byte[] get(RenditionKey key, Loader loader) throws IOException {
+    byte[] data = getIfPresent(key);
+    if (data == null) {
+      data = loads.execute(key, () -> {
+        // another flight may have completed between the lookup and this one
+        byte[] loaded = peek(key);
+        if (loaded == null) {
+          loaded = loader.load();
+          put(key, loaded);
+        }
+        return loaded;
+      });
+    }
+    return data;
+  }
+
+  /**
+   * Returns whether a rendition is in the cache. Unlike {@link #getIfPresent(RenditionKey)}, this
+   * is not recorded in the statistics, and does not mark the rendition as recently used.
+   *
+   * @param key the rendition key
+   * @return true if the rendition is in the cache
+   */
+  public synchronized boolean containsKey(RenditionKey key) {
+    return entries.containsKey(key);
+  }
+
+  private synchronized byte[] peek(RenditionKey key) {
+    return entries.get(key);
+  }
+
+  /**
+   * Stores a rendition in the cache. Renditions larger than the maximum size are not cached.
+   *
+   * @param key the rendition key
+   * @param data the rendition
+   */
+  public synchronized void put(RenditionKey key, byte[] data) {
+    if (data.length > maximumSize) {
+      return;
+    }
+    byte[] previous = entries.put(key, data);
+    if (previous != null) {
+      size -= previous.length;
+    }
+    size += data.length;
+    evict();
+  }
+
+  /**
+   * Removes all the renditions of the given source image.
+   *
+   * @param sourceId the source identifier
+   */
+  public synchronized void invalidate(String sourceId) {
+    Iterator<Map.Entry<RenditionKey, byte[]>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<RenditionKey, byte[]> entry = it.next();
+      if (entry.getKey().getSourceId().equals(sourceId)) {
+        size -= entry.getValue().length;
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all the renditions from the cache.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    size = 0;
+  }
+
+  /**
+   * Returns a snapshot of the cache statistics.
+   *
+   * @return the cache statistics
+   */
+  public synchronized Stats getStats() {
+    return new Stats(hitCount, missCount, evictionCount, size, entries.size());
+  }
+
+  private void evict() {
+    Iterator<byte[]> it = entries.values().iterator();
+    while (size > maximumSize && it.hasNext()) {
+      size -= it.next().length;
+      it.remove();
+      evictionCount++;
+    }
+  }
+
+}
@@ -0,0 +1,77 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.util.Objects;
+import lombok.Getter;
+
+/**
+ * Identifies a rendition of a source image, i.e. a tile or a resampled version of it.
+ */
+@Getter
+public final class RenditionKey {
+
+  private final String sourceId;
+  private final String variant;
+  private final int level;
+  private final int x;
+  private final int y;
+
+  /**
+   * Creates a key for a rendition of a source image.
+   *
+   * @param sourceId a string that uniquely identifies the source image
+   * @param variant the kind of rendition (e.g. tile size and format)
+   * @param level the pyramid level, or resolution of the rendition
+   * @param x the tile column, or 0 if the rendition is not a tile
+   * @param y the tile row, or 0 if the rendition is not a tile
+   */
+  public RenditionKey(String sourceId, String variant, int level, int x, int y) {
+    this.sourceId = Objects.requireNonNull(sourceId);
+    this.variant = Objects.requireNonNull(variant);
+    this.level = level;
+    this.x = x;
+    this.y = y;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof RenditionKey)) {
+      return false;
+    }
+    RenditionKey other = (RenditionKey) obj;
+    return level == other.level && x == other.x && y == other.y
+        && sourceId.equals(other.sourceId) && variant.equals(other.variant);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(sourceId, variant, level, x, y);
+  }
+
+  @Override
+  public String toString() {
+    return sourceId + "[" + variant + ":" + level + "/" + x + "/" + y + "]";
+  }
+
+}
@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces concurrent executions of the same task. While a task for a given key is running,
+ * other threads requesting the same key wait for its result instead of running the task again.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the results
+ */
+public final class SingleFlight<K, V> {
+
+  /**
+   * A task whose result is shared by all the concurrent callers with the same key.
+   *
+   * @param <V> the type of the result
+   */
+  @FunctionalInterface
+  public interface Task<V> {
+    /**
+     * Computes the result.
+     *
+     * @return the result
+     * @throws IOException if the result cannot be computed
+     */
+    V call() throws IOException;
+  }
+
+  private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  /**
+   * Executes the task, unless there is already a task in flight for the same key, in which case
+   * the current thread waits for that task to complete and returns its result.
+   *
+   * @param key the key
+   * @param task the task to execute
+   * @return the result of the task
+   * @throws IOException if the task fails
+   */
+  public V execute(K key, Task<V> task) throws IOException {
+    CompletableFuture<V> future = new CompletableFuture<>();
+    CompletableFuture<V> inFlight = calls.putIfAbsent(key, future);
+    if (inFlight != null) {
+      waiters.incrementAndGet();
+      try {
+        return await(inFlight);
+      } finally {
+        waiters.decrementAndGet();
+      }
+    }
+
+    try {
+      V result = task.call();
+      future.complete(result);
+      return result;
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+      throw t;
+    } finally {
+      calls.remove(key, future);
+    }
+  }
+
+  /**
+   * Returns the number of tasks currently in flight.
+   *
+   * @return the number of tasks in flight
+   */
+  public int getInFlightCount() {
+    return calls.size();
+  }
+
+  /**
+   * Returns the number of threads waiting for the result of a task executed by another thread.
+   *
+   * @return the number of waiting threads
+   */
+  public int getWaiterCount() {
+    return waiters.get();
+  }
+
+  private V await(CompletableFuture<V> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw new IOException(cause.getMessage(), cause);
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+}
@@ -0,0 +1,64 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks, each of them guarding all the keys whose hash falls in its stripe. This
+ * allows locking by key without keeping a lock object for every key.
+ */
+public final class StripedLocks {
+
+  private final Lock[] locks;
+
+  /**
+   * Creates a new set of locks.
+   *
+   * @param stripes the minimum number of stripes (rounded up to a power of two)
+   */
+  public StripedLocks(int stripes) {
+    if (stripes <= 0) {
+      throw new IllegalArgumentException("Number of stripes must be positive");
+    }
+    int size = Integer.highestOneBit(stripes);
+    if (size < stripes) {
+      size <<= 1;
+    }
+    locks = new Lock[size];
+    for (int i = 0; i < size; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Returns the lock guarding the given key.
+   *
+   * @param key the key
+   * @return the lock for the key
+   */
+  public Lock get(Object key) {
+    int h = key.hashCode();
+    h ^= (h >>> 16);
+    return locks[h & (locks.length - 1)];
+  }
+
+}
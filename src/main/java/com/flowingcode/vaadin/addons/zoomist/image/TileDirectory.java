@@ -0,0 +1,196 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.Properties;
+import lombok.Getter;
+
+/**
+ * Tile store that keeps the pyramid in a directory of files, either filled on demand or
+ * generated ahead of time. Tiles are stored as {@code <level>/<column>_<row>.<format>}, next to
+ * the overview image {@code overview.<format>} and a {@code pyramid.properties} descriptor with
+ * the geometry of the pyramid.
+ * <p>
+ * Files are written to a temporary file and then moved into place, so that a server reading the
+ * directory never sees a partially written tile.
+ * </p>
+ */
+public final class TileDirectory implements TileStore, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Name of the descriptor file. */
+  public static final String DESCRIPTOR = "pyramid.properties";
+
+  @Getter
+  private final File root;
+
+  @Getter
+  private final String format;
+
+  /**
+   * Creates a tile directory.
+   *
+   * @param root the directory that contains the pyramid
+   * @param format the format of the encoded tiles, which is also the file extension
+   */
+  public TileDirectory(File root, String format) {
+    this.root = Objects.requireNonNull(root);
+    this.format = Objects.requireNonNull(format);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * When the pyramid is generated ahead of time, the descriptor is only present once every tile
+   * has been written.
+   * </p>
+   */
+  @Override
+  public Descriptor getDescriptor() throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(root.toPath().resolve(DESCRIPTOR))) {
+      properties.load(in);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    try {
+      TilePyramid pyramid = new TilePyramid(
+          Integer.parseInt(properties.getProperty("width")),
+          Integer.parseInt(properties.getProperty("height")),
+          Integer.parseInt(properties.getProperty("tileSize")));
+      return new Descriptor(pyramid, properties.getProperty("format", format),
+          Long.parseLong(properties.getProperty("lastModified", "0")));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid pyramid descriptor in " + root, e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * When generating a pyramid ahead of time, this method should be called after all the tiles
+   * have been written.
+   * </p>
+   */
+  @Override
+  public void putDescriptor(Descriptor descriptor) throws IOException {
+    TilePyramid pyramid = descriptor.getPyramid();
+    Properties properties = new Properties();
+    properties.setProperty("width", Integer.toString(pyramid.getWidth()));
+    properties.setProperty("height", Integer.toString(pyramid.getHeight()));
+    properties.setProperty("tileSize", Integer.toString(pyramid.getTileSize()));
+    properties.setProperty("levels", Integer.toString(pyramid.getLevels()));
+    properties.setProperty("format", descriptor.getFormat());
+    properties.setProperty("lastModified", Long.toString(descriptor.getLastModified()));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    properties.store(out, null);
+    write(root.toPath().resolve(DESCRIPTOR), out.toByteArray());
+  }
+
+  /**
+   * Removes the descriptor, so that the pyramid is not used until it has been written again.
+   *
+   * @throws IOException if the descriptor cannot be removed
+   */
+  public void invalidate() throws IOException {
+    Files.deleteIfExists(root.toPath().resolve(DESCRIPTOR));
+  }
+
+  @Override
+  public byte[] getTile(int level, int column, int row) throws IOException {
+    return read(getTilePath(level, column, row));
+  }
+
+  @Override
+  public boolean containsTile(int level, int column, int row) {
+    return Files.isRegularFile(getTilePath(level, column, row));
+  }
+
+  @Override
+  public boolean containsOverview() {
+    return Files.isRegularFile(root.toPath().resolve("overview." + format));
+  }
+
+  @Override
+  public void putTile(int level, int column, int row, byte[] data) throws IOException {
+    write(getTilePath(level, column, row), data);
+  }
+
+  @Override
+  public byte[] getOverview() throws IOException {
+    return read(root.toPath().resolve("overview." + format));
+  }
+
+  @Override
+  public void putOverview(byte[] data) throws IOException {
+    write(root.toPath().resolve("overview." + format), data);
+  }
+
+  private Path getTilePath(int level, int column, int row) {
+    return root.toPath().resolve(Integer.toString(level))
+        .resolve(column + "_" + row + "." + format);
+  }
+
+  private static byte[] read(Path path) throws IOException {
+    try {
+      return Files.readAllBytes(path);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  private static void write(Path path, byte[] data) throws IOException {
+    Files.createDirectories(path.getParent());
+    Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temp, data);
+      move(temp, path);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return root.toString();
+  }
+
+}
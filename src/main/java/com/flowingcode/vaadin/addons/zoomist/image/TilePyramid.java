@@ -0,0 +1,181 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.awt.Rectangle;
+import java.io.Serializable;
+import lombok.Getter;
+
+/**
+ * Geometry of a multi-resolution tile pyramid. Level 0 is the full resolution image, and each
+ * following level halves the dimensions of the previous one, until the whole image fits in a
+ * single tile.
+ */
+@Getter
+public final class TilePyramid implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int width;
+  private final int height;
+  private final int tileSize;
+  private final int levels;
+
+  /**
+   * Creates the pyramid geometry for an image of the given dimensions.
+   *
+   * @param width the width of the full resolution image
+   * @param height the height of the full resolution image
+   * @param tileSize the width and height of each tile
+   */
+  public TilePyramid(int width, int height, int tileSize) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Image dimensions must be positive");
+    }
+    if (tileSize <= 0) {
+      throw new IllegalArgumentException("Tile size must be positive");
+    }
+    this.width = width;
+    this.height = height;
+    this.tileSize = tileSize;
+
+    int levels = 1;
+    int size = Math.max(width, height);
+    while (size > tileSize) {
+      size = (size + 1) / 2;
+      levels++;
+    }
+    this.levels = levels;
+  }
+
+  /**
+   * Returns the width of the image at the given level.
+   *
+   * @param level the pyramid level
+   * @return the level width
+   */
+  public int getLevelWidth(int level) {
+    return scale(width, level);
+  }
+
+  /**
+   * Returns the height of the image at the given level.
+   *
+   * @param level the pyramid level
+   * @return the level height
+   */
+  public int getLevelHeight(int level) {
+    return scale(height, level);
+  }
+
+  /**
+   * Returns the number of tile columns at the given level.
+   *
+   * @param level the pyramid level
+   * @return the number of columns
+   */
+  public int getColumns(int level) {
+    return (getLevelWidth(level) + tileSize - 1) / tileSize;
+  }
+
+  /**
+   * Returns the number of tile rows at the given level.
+   *
+   * @param level the pyramid level
+   * @return the number of rows
+   */
+  public int getRows(int level) {
+    return (getLevelHeight(level) + tileSize - 1) / tileSize;
+  }
+
+  /**
+   * Returns whether the given tile coordinates belong to this pyramid.
+   *
+   * @param level the pyramid level
+   * @param column the tile column
+   * @param row the tile row
+   * @return true if the tile exists
+   */
+  public boolean contains(int level, int column, int row) {
+    return level >= 0 && level < levels && column >= 0 && column < getColumns(level) && row >= 0
+        && row < getRows(level);
+  }
+
+  /**
+   * Returns the bounds of a tile, in pixels of its own level. Tiles in the last column and row
+   * may be smaller than the tile size.
+   *
+   * @param level the pyramid level
+   * @param column the tile column
+   * @param row the tile row
+   * @return the tile bounds
+   */
+  public Rectangle getTileBounds(int level, int column, int row) {
+    checkTile(level, column, row);
+    int x = column * tileSize;
+    int y = row * tileSize;
+    return new Rectangle(x, y, Math.min(tileSize, getLevelWidth(level) - x),
+        Math.min(tileSize, getLevelHeight(level) - y));
+  }
+
+  /**
+   * Returns the region of the full resolution image that is covered by a tile.
+   *
+   * @param level the pyramid level
+   * @param column the tile column
+   * @param row the tile row
+   * @return the tile bounds, in pixels of level 0
+   */
+  public Rectangle getSourceRegion(int level, int column, int row) {
+    checkTile(level, column, row);
+    long span = (long) tileSize << level;
+    int x = (int) Math.min(column * span, width);
+    int y = (int) Math.min(row * span, height);
+    return new Rectangle(x, y, (int) Math.min(span, width - x), (int) Math.min(span, height - y));
+  }
+
+  /**
+   * Returns the lowest level (i.e. the one with the highest resolution) whose image fits in a
+   * square of the given size.
+   *
+   * @param maxSize the maximum width and height
+   * @return the pyramid level
+   */
+  public int getLevelFittingIn(int maxSize) {
+    int level = 0;
+    while (level < levels - 1
+        && (getLevelWidth(level) > maxSize || getLevelHeight(level) > maxSize)) {
+      level++;
+    }
+    return level;
+  }
+
+  private void checkTile(int level, int column, int row) {
+    if (!contains(level, column, row)) {
+      throw new IndexOutOfBoundsException(
+          "No tile at level " + level + ", column " + column + ", row " + row);
+    }
+  }
+
+  private static int scale(int size, int level) {
+    return Math.max(1, (int) ((size + (1L << level) - 1) >> level));
+  }
+
+}
@@ -0,0 +1,174 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.image;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import lombok.Getter;
+
+/**
+ * Storage for the encoded tiles and overview image of a single tile pyramid.
+ * <p>
+ * Implementations must be safe for concurrent use. The following implementations are provided:
+ * </p>
+ * <ul>
+ * <li>{@link HeapTileStore}, bounded by size, for pyramids that are generated on demand;</li>
+ * <li>{@link TileDirectory}, a directory of files, for pyramids that are generated on demand or
+ * ahead of time;</li>
+ * <li>{@link ArchiveTileStore}, a single read-only file that is memory-mapped, for pyramids with
+ * many tiles that are generated ahead of time.</li>
+ * </ul>
+ */
+public interface TileStore {
+
+  /**
+   * Geometry and provenance of a stored pyramid.
+   */
+  @Getter
+  final class Descriptor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TilePyramid pyramid;
+    private final String format;
+    private final long lastModified;
+
+    /**
+     * Creates a new descriptor.
+     *
+     * @param pyramid the geometry of the pyramid
+     * @param format the format of the encoded tiles
+     * @param lastModified the modification time of the source image, or 0 if unknown
+     */
+    public Descriptor(TilePyramid pyramid, String format, long lastModified) {
+      this.pyramid = Objects.requireNonNull(pyramid);
+      this.format = Objects.requireNonNull(format);
+      this.lastModified = lastModified;
+    }
+  }
+
+  /**
+   * Returns the descriptor of the stored pyramid.
+   *
+   * @return the descriptor, or {@code null} if it has not been stored
+   * @throws IOException if the descriptor cannot be read
+   */
+  Descriptor getDescriptor() throws IOException;
+
+  /**
+   * Returns an encoded tile.
+   *
+   * @param level the pyramid level
+   * @param column the tile column
+   * @param row the tile row
+   * @return the encoded tile, or {@code null} if the tile has not been stored
+   * @throws IOException if the tile cannot be read
+   */
+  byte[] getTile(int level, int column, int row) throws IOException;
+
+  /**
+   * Returns an encoded tile as a buffer, which may be a read-only view of the storage of the
+   * store, so that it can be sent without copying it. By default, the array returned by
+   * {@link #getTile(int, int, int)} is wrapped.
+   *
+   * @param level the pyramid level
+   * @param column the tile column
+   * @param row the tile row
+   * @return the encoded tile, or {@code null} if the tile has not been stored
+   * @throws IOException if the tile cannot be read
+   */
+  default ByteBuffer getTileBuffer(int level, int column, int row) throws IOException {
+    byte[] data = getTile(level, column, row);
+    return data != null ? ByteBuffer.wrap(data) : null;
+  }
+
+  /**
+   * Returns the encoded overview image.
+   *
+   * @return the encoded overview image, or {@code null} if it has not been stored
+   * @throws IOException if the overview image cannot be read
+   */
+  byte[] getOverview() throws IOException;
+
+  /**
+   * Returns whether a tile has been stored, without reading it.
+   *
+   * @param level the pyramid level
+   * @param column the tile column
+   * @param row the tile row
+   * @return true if the tile has been stored
+   * @throws IOException if the store cannot be read
+   */
+  default boolean containsTile(int level, int column, int row) throws IOException {
+    return getTile(level, column, row) != null;
+  }
+
+  /**
+   * Returns whether the overview image has been stored, without reading it.
+   *
+   * @return true if the overview image has been stored
+   * @throws IOException if the store cannot be read
+   */
+  default boolean containsOverview() throws IOException {
+    return getOverview() != null;
+  }
+
+  /**
+   * Returns whether this store can only be read.
+   *
+   * @return true if the {@code put} methods are not supported
+   */
+  default boolean isReadOnly() {
+    return false;
+  }
+
+  /**
+   * Stores the descriptor of the pyramid.
+   *
+   * @param descriptor the descriptor
+   * @throws IOException if the descriptor cannot be written
+   * @throws UnsupportedOperationException if the store is read-only
+   */
+  void putDescriptor(Descriptor descriptor) throws IOException;
+
+  /**
+   * Stores an encoded tile. This method can be used as a {@link PyramidBuilder.TileSink}.
+   *
+   * @param level the pyramid level
+   * @param column the tile column
+   * @param row the tile row
+   * @param data the encoded tile
+   * @throws IOException if the tile cannot be written
+   * @throws UnsupportedOperationException if the store is read-only
+   */
+  void putTile(int level, int column, int row, byte[] data) throws IOException;
+
+  /**
+   * Stores the encoded overview image.
+   *
+   * @param data the encoded overview image
+   * @throws IOException if the overview image cannot be written
+   * @throws UnsupportedOperationException if the store is read-only
+   */
+  void putOverview(byte[] data) throws IOException;
+
+}
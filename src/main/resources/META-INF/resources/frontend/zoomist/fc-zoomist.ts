@@ -22,16 +22,91 @@ import { query, property } from "lit/decorators.js";
 import Zoomist from "zoomist";
 import zoomistStyles from "zoomist/dist/zoomist.min.css?inline";
 
+/**
+ * Maximum number of detached components whose Zoomist instance is kept alive, so that it can be
+ * reused if the component is attached again. The least recently detached ones are destroyed first.
+ */
+const POOL_SIZE = 8;
+
+const pool = new Set<FcZoomist>();
+
+/** How far ahead, in milliseconds, the motion of the image is extrapolated for prefetching. */
+const PREFETCH_LOOKAHEAD = 300;
+
+/** Header that marks speculative requests, so that the server serves visible ones first. */
+const PREFETCH_HEADER = "X-Zoomist-Prefetch";
+
+/** Default values of the options, restored when an option is omitted from the options object. */
+const OPTION_DEFAULTS = {
+  fill: "cover",
+  draggable: true,
+  wheelable: true,
+  pinchable: true,
+  bounds: true,
+  zoomRatio: 0.1,
+  maxRatio: false,
+  height: "auto",
+  slider: true,
+  zoomer: true,
+};
+
 export class FcZoomist extends LitElement {
   @query("#container")
   private _zoomistElement!: HTMLElement;
   private _zoomRatio;
+  private _tileLayer?: HTMLElement;
+  private _tileImages = new Map<string, HTMLImageElement>();
+  private _visibleTiles = new Set<string>();
+  private _tileLevel = -1;
+  private _viewportFrame = 0;
+  private _loadedWidth = 0;
+  private _pendingSrc?: string;
+  /** Registered listeners by event type, keyed by listener and capture flag. */
+  private _listeners = new Map<string, Map<boolean, Map<any, any>>>();
+  private _pendingEvents = new Map<string, any>();
+  private _pendingCommands: any[][] = [];
+  private _ready = false;
+  private _eventFrame = 0;
+  private _inView = false;
+  private _observers: IntersectionObserver[] = [];
+  private _swapId = 0;
+  private _createId = 0;
+  private _lowQuality?: { src: string; url: string; full: HTMLImageElement };
+  private _fullSrc?: string;
+  private _gestures = 0;
+  private _motion?: {
+    time: number;
+    x: number;
+    y: number;
+    width: number;
+    vx: number;
+    vy: number;
+    vw: number;
+  };
+  private _speculative = new Set<string>();
+  private _speculativeInFlight = 0;
+  private _prefetched = new Map<string, HTMLImageElement>();
 
   static styles = [
     zoomistStyles,
     css`
       :host {
       }
+      #container.placeholder .zoomist-image {
+        filter: blur(8px);
+      }
+      .zoomist-tiles {
+        position: absolute;
+        pointer-events: none;
+      }
+      .zoomist-tiles img {
+        position: absolute;
+        display: block;
+        max-width: none;
+      }
+      .zoomist-tiles img:not(.loaded) {
+        visibility: hidden;
+      }
     `,
   ];
 
@@ -49,30 +124,154 @@ export class FcZoomist extends LitElement {
     height: {},
     slider: {},
     zoomer: {},
+    tiles: { type: Object },
+    resample: { type: Object },
+    renditions: { type: Array },
+    placeholder: String,
+    options: { type: Object },
+    pooled: Boolean,
+    lazy: Boolean,
+    lazyMargin: String,
+    releaseMargin: String,
+    gallery: { type: Array },
+    galleryIndex: { type: Number },
+    _gallerySrc: { state: true },
+    _galleryResample: { state: true },
+    preserveView: Boolean,
+    lowQualityInteraction: Boolean,
+    prefetchBudget: { type: Number },
   };
 
   render() {
-    return html` <div id="container" data-zoomist-src="${this.src}"></div>`;
+    let src = this._zoomist ? this.__src() : this.__initialSrc();
+    if (!this._zoomist && this.placeholder) {
+      // display the placeholder first, and swap the actual image in once zoomist is ready
+      this._pendingSrc = src;
+      src = this.placeholder;
+    }
+    return html` <div id="container" data-zoomist-src="${src}"></div>`;
   }
 
   constructor() {
     super();
 
-    this.fill = "cover";
-    this.draggable = true;
-    this.wheelable = true;
-    this.pinchable = true;
-    this.bounds = true;
-    this._zoomRatio = 0.1;
-    this.maxRatio = false;
-    this.height = "auto";
-    this.slider = true;
-    this.zoomer = true;
+    Object.assign(this, OPTION_DEFAULTS);
+    this.prefetchBudget = 4;
   }
 
   firstUpdated() {
     super.firstUpdated();
-    this._zoomist = new Zoomist(this._zoomistElement); 
+    if (this.lazy) {
+      this.__observe();
+    } else {
+      this.__createZoomist();
+    }
+  }
+
+  connectedCallback() {
+    super.connectedCallback();
+    const pooled = pool.delete(this);
+    if (!this.hasUpdated) {
+      return;
+    }
+    if (this.lazy) {
+      this.__observe();
+    } else if (!pooled && !this._zoomist) {
+      this.__recreateZoomist();
+    }
+  }
+
+  disconnectedCallback() {
+    super.disconnectedCallback();
+    this.__unobserve();
+    if (!this._zoomist) {
+      return;
+    }
+    if (this.pooled) {
+      pool.add(this);
+      if (pool.size > POOL_SIZE) {
+        const oldest = pool.values().next().value!;
+        pool.delete(oldest);
+        oldest.__destroyZoomist();
+      }
+    } else {
+      this.__destroyZoomist();
+    }
+  }
+
+  /**
+   * Creates the Zoomist instance again after it has been destroyed, rendering the initial source
+   * first.
+   */
+  __recreateZoomist() {
+    this.requestUpdate();
+    this.updateComplete.then(() => {
+      if (this.isConnected && !this._zoomist && (!this.lazy || this._inView)) {
+        this.__createZoomist();
+      }
+    });
+  }
+
+  /**
+   * In lazy mode, defers loading the image and creating the Zoomist instance until the component
+   * approaches the viewport, and destroys the instance when it scrolls past the release margin.
+   */
+  __observe() {
+    this.__unobserve();
+    const lazyObserver = new IntersectionObserver(
+      (entries) => {
+        this._inView = entries[entries.length - 1].isIntersecting;
+        if (this._inView && !this._zoomist) {
+          this.__recreateZoomist();
+        }
+      },
+      { rootMargin: this.lazyMargin || "200px" }
+    );
+    lazyObserver.observe(this);
+    this._observers.push(lazyObserver);
+
+    if (this.releaseMargin) {
+      const releaseObserver = new IntersectionObserver(
+        (entries) => {
+          if (!entries[entries.length - 1].isIntersecting && this._zoomist) {
+            this.__destroyZoomist();
+          }
+        },
+        { rootMargin: this.releaseMargin }
+      );
+      releaseObserver.observe(this);
+      this._observers.push(releaseObserver);
+    }
+  }
+
+  __unobserve() {
+    this._observers.forEach((observer) => observer.disconnect());
+    this._observers = [];
+    this._inView = false;
+  }
+
+  /**
+   * Creates the Zoomist instance once the initial image has been downloaded and decoded, so that
+   * decoding does not block the main thread when zoomist first paints it.
+   */
+  async __createZoomist() {
+    const id = ++this._createId;
+    let src;
+    while (src !== this._zoomistElement.dataset.zoomistSrc) {
+      src = this._zoomistElement.dataset.zoomistSrc;
+      if (src) {
+        await this.__decode(src);
+      }
+      if (id !== this._createId || !this.isConnected || (this.lazy && !this._inView)) {
+        return;
+      }
+    }
+
+    // remove whatever a previous instance left in the container
+    this._zoomistElement.replaceChildren();
+    this._zoomistElement.classList.toggle("placeholder", !!this._pendingSrc);
+    this._ready = false;
+    this._zoomist = new Zoomist(this._zoomistElement);
     this._zoomist.options.slider = this.slider;
     this._zoomist.options.zoomer = this.zoomer;
     this._zoomist.options.bounds = this.bounds;
@@ -86,8 +285,54 @@ export class FcZoomist extends LitElement {
     this.__registerEventListeners();
   }
 
+  __destroyZoomist() {
+    this._createId++;
+    this._prefetched.clear();
+    this.__resetTiles();
+    cancelAnimationFrame(this._viewportFrame);
+    this._viewportFrame = 0;
+    cancelAnimationFrame(this._eventFrame);
+    this._eventFrame = 0;
+    this._pendingEvents.clear();
+    this.__releaseLowQuality();
+    this._fullSrc = undefined;
+    this._gestures = 0;
+    this._ready = false;
+    this._zoomist.destroy();
+    this._zoomist = undefined;
+  }
+
   willUpdate(changedProperties) {
+    if (changedProperties.has("options") && this.options) {
+      // the options object is complete: omitted keys go back to their defaults, and values are
+      // compared by content, since the server sends new slider and zoomer objects every time.
+      // Properties set during willUpdate are part of the current update
+      for (const [key, defaultValue] of Object.entries(OPTION_DEFAULTS)) {
+        const value = this.options[key] ?? defaultValue;
+        if (JSON.stringify(value) !== JSON.stringify(this[key])) {
+          this[key] = value;
+        }
+      }
+    }
+    if (changedProperties.has("galleryIndex") || changedProperties.has("gallery")) {
+      this.__showGalleryItem();
+    }
+    const changedLazy = ["lazy", "lazyMargin", "releaseMargin"].some((name) =>
+      changedProperties.has(name)
+    );
+    if (changedLazy && this.hasUpdated && this.isConnected) {
+      // before the first update and on attach, this is done by firstUpdated and connectedCallback
+      if (this.lazy) {
+        this.__observe();
+      } else {
+        this.__unobserve();
+        if (!this._zoomist) {
+          this.__recreateZoomist();
+        }
+      }
+    }
     if (this._zoomist) {
+      let update = false;
       if (changedProperties.has("fill")) {
         this._zoomist.options.fill = this.fill;
       }
@@ -114,33 +359,85 @@ export class FcZoomist extends LitElement {
       }
       if (changedProperties.has("slider")) {
         this._zoomist.options.slider = this.slider;
-        this._zoomist.update();
+        update = true;
       }
       if (changedProperties.has("zoomer")) {
         this._zoomist.options.zoomer = this.zoomer;
+        update = true;
+      }
+      if (update) {
         this._zoomist.update();
       }
+      const changedSrc = changedProperties.has("src") || changedProperties.has("_gallerySrc");
+      if (changedProperties.has("tiles") || changedSrc) {
+        this.__resetTiles();
+      }
+      const changedSource = changedSrc || changedProperties.has("renditions");
+      if (changedSource || changedProperties.has("resample")
+          || changedProperties.has("_galleryResample")) {
+        // reuse the current instance, swapping the image once it has been decoded
+        const url = this.__initialSrc();
+        const image = this.__image();
+        if (changedSource && this.placeholder && image
+            && !this._prefetched.get(url)?.complete) {
+          image.src = this.placeholder;
+          this._zoomistElement.classList.add("placeholder");
+        }
+        this.__swapImage(url, changedSource && !this.preserveView);
+      }
     }
   }
 
   zoom(ratio) {
-    this._zoomist.zoom(ratio);
+    this.__command("zoom", ratio);
   }
 
   move(x, y) {
-    this._zoomist.move(x, y);
+    this.__command("move", x, y);
   }
 
   moveTo(x, y) {
-    this._zoomist.moveTo(x, y);
+    this.__command("moveTo", x, y);
   }
 
   slideTo(value) {
-    this._zoomist.slideTo(value);
+    this.__command("slideTo", value);
   }
 
   reset() {
-    this._zoomist.reset();
+    this.__command("reset");
+  }
+
+  /**
+   * Runs a command on the zoomist instance. Until the instance is ready (before a lazy instance
+   * is created, while the image is being decoded, or after the instance has been released) the
+   * command is queued, and it is replayed once the instance is ready.
+   */
+  __command(name: string, ...args) {
+    if (this._zoomist && this._ready) {
+      this._zoomist[name](...args);
+    } else if (name === "reset") {
+      // a reset makes the commands before it irrelevant
+      this._pendingCommands = [[name]];
+    } else {
+      this._pendingCommands.push([name, ...args]);
+    }
+  }
+
+  /**
+   * Runs a sequence of commands, given as the name of each command followed by its arguments.
+   */
+  batch(...commands) {
+    const arities = { zoom: 1, zoomTo: 1, move: 2, moveTo: 2, slideTo: 1, reset: 0 };
+    for (let i = 0; i < commands.length; ) {
+      const name = commands[i++];
+      const arity = arities[name];
+      if (arity === undefined) {
+        throw new Error(`Unknown command: ${name}`);
+      }
+      this.__command(name, ...commands.slice(i, i + arity));
+      i += arity;
+    }
   }
 
   set zoomRatio(val) {
@@ -161,74 +458,712 @@ export class FcZoomist extends LitElement {
     return { width: 0, height: 0, aspectRatio: 0 };
   }
 
+  __containerSize() {
+    const { width, height } = this.containerData;
+    return { width, height };
+  }
+
+  /**
+   * Returns the offset of the image within the container, as reported by drag events, so that
+   * events that also move the image (zooming and sliding) report where it ended up.
+   */
+  __imageOffset() {
+    const data = this._zoomist?.getImageData?.();
+    if (data && typeof data.left === "number") {
+      return { offsetX: data.left, offsetY: data.top };
+    }
+    const image = this.__image();
+    if (!image || !this._zoomistElement) {
+      return { offsetX: 0, offsetY: 0 };
+    }
+    const container = this._zoomistElement.getBoundingClientRect();
+    const bounds = image.getBoundingClientRect();
+    return { offsetX: bounds.left - container.left, offsetY: bounds.top - container.top };
+  }
+
+  __withParams(url: string, params: string) {
+    return `${url}${url.includes("?") ? "&" : "?"}${params}`;
+  }
+
+  /**
+   * Returns the URL that is loaded first: the smallest rendition that covers the width of the
+   * container in device pixels, or the source if there are no renditions.
+   */
+  __initialSrc() {
+    const ladder = this.__ladder();
+    if (!ladder.length) {
+      this._loadedWidth = 0;
+      return this.__src();
+    }
+    const width = this.getBoundingClientRect().width || window.innerWidth;
+    const needed = width * window.devicePixelRatio;
+    const rendition = ladder.find((r) => r.width >= needed) || ladder[ladder.length - 1];
+    this._loadedWidth = rendition.width;
+    return rendition.url;
+  }
+
+  /**
+   * Returns the renditions of the current source, from the smallest to the largest one: either
+   * the renditions given by the server, or the widths at which a resampled source is requested.
+   */
+  __ladder(): { width: number; url: string }[] {
+    if (this.renditions) {
+      return this.renditions.map((rendition, i) => ({
+        width: rendition.width,
+        url: this.getAttribute(`rendition-${i}`),
+      }));
+    }
+    const src = this.__src();
+    const resample = this.__resample();
+    if (resample && src) {
+      return this.__resampleWidths(resample).map((width) => ({
+        width,
+        url: width < resample.width ? this.__withParams(src, `w=${width}`) : src,
+      }));
+    }
+    return [];
+  }
+
+  /**
+   * Returns the displayed source: the selected item of the gallery, or the source set by the
+   * server. The gallery item is kept apart, so that the server-owned property stays in sync.
+   */
+  __src() {
+    return this._gallerySrc ?? this.src;
+  }
+
+  __resample() {
+    return this._gallerySrc != null ? this._galleryResample : this.resample;
+  }
+
+  /**
+   * Returns the widths at which a resampled image is requested: the size of the container in
+   * device pixels multiplied by each factor of the ladder, followed by the original width.
+   */
+  __resampleWidths(resample: { width: number; height: number; ladder?: number[] }) {
+    const { width, height } = resample;
+    const bounds = this.getBoundingClientRect();
+    const cover = Math.max(bounds.width, (bounds.height * width) / height) || window.innerWidth;
+    const widths = (resample.ladder || [1])
+      .map((factor) => Math.ceil(cover * window.devicePixelRatio * factor))
+      .filter((w) => w < width);
+    return [...new Set(widths), width];
+  }
+
+  /**
+   * Downloads and decodes an image. The decoded image is kept, so that it is displayed without
+   * decoding it again.
+   *
+   * Decoding relies on HTMLImageElement.decode(), which browsers run on their image decoding
+   * threads, but which may still decode on the main thread in some engines. createImageBitmap
+   * in a worker is not used, since zoomist displays an <img> element and an ImageBitmap cannot
+   * be handed to it.
+   */
+  async __decode(url: string) {
+    let img = this._prefetched.get(url);
+    if (!img) {
+      img = new Image();
+      img.decoding = "async";
+      img.src = url;
+      this._prefetched.set(url, img);
+    }
+    try {
+      await img.decode();
+    } catch (e) {
+      // zoomist reports the error when it loads the image
+    }
+  }
+
+  __image() {
+    return this._zoomistElement?.querySelector(".zoomist-image") as HTMLImageElement | null;
+  }
+
+  /**
+   * Replaces the image displayed by zoomist once the new one has been loaded and decoded. The
+   * current transform is kept unless reset is requested.
+   */
+  async __swapImage(url: string, reset = false) {
+    const id = ++this._swapId;
+    let preload = this._prefetched.get(url);
+    if (!preload) {
+      preload = new Image();
+      preload.decoding = "async";
+      preload.src = url;
+    }
+    try {
+      await preload.decode();
+    } catch (e) {
+      return;
+    }
+    if (id !== this._swapId) {
+      // a different image was requested in the meantime
+      return;
+    }
+    const image = this.__image();
+    if (this._fullSrc) {
+      // a low quality image is displayed during an interaction: restore the new one at the end
+      this._fullSrc = preload.src;
+    } else if (image && image.src !== preload.src) {
+      image.src = preload.src;
+    }
+    this._zoomistElement?.classList.remove("placeholder");
+    if (reset) {
+      this._zoomist?.reset();
+    }
+    this.__prepareLowQuality(preload);
+  }
+
+  /**
+   * Renders a copy of the displayed image at the size of the container, which is displayed
+   * instead of the full resolution image while the user drags, pinches or slides.
+   */
+  __prepareLowQuality(image: HTMLImageElement) {
+    this.__releaseLowQuality();
+    if (!this.lowQualityInteraction || !image.naturalWidth) {
+      return;
+    }
+    const { width } = this.__containerSize();
+    const w = Math.ceil(width * window.devicePixelRatio);
+    if (!w || image.naturalWidth < w * 2) {
+      // the browser resamples small images cheaply
+      return;
+    }
+    const canvas = document.createElement("canvas");
+    canvas.width = w;
+    canvas.height = Math.max(1, Math.round((w * image.naturalHeight) / image.naturalWidth));
+    canvas.getContext("2d")!.drawImage(image, 0, 0, canvas.width, canvas.height);
+    const src = image.src;
+    try {
+      canvas.toBlob((blob) => {
+        if (blob && !this._lowQuality && this.__fullImageSrc() === src) {
+          // keep the full resolution image decoded, so that restoring it is instant
+          const full = new Image();
+          full.src = src;
+          full.decode().catch(() => {});
+          this._lowQuality = { src, url: URL.createObjectURL(blob), full };
+        }
+      }, "image/webp");
+    } catch (e) {
+      // cross-origin images cannot be read back from a canvas
+    }
+  }
+
+  __releaseLowQuality() {
+    if (this._lowQuality) {
+      URL.revokeObjectURL(this._lowQuality.url);
+      this._lowQuality = undefined;
+    }
+  }
+
+  __fullImageSrc() {
+    return this._fullSrc || this.__image()?.src;
+  }
+
+  __startInteraction() {
+    const image = this.__image();
+    if (this._gestures++ === 0 && image && this._lowQuality?.src === image.src) {
+      this._fullSrc = image.src;
+      image.src = this._lowQuality.url;
+    }
+  }
+
+  __endInteraction() {
+    this._gestures = Math.max(0, this._gestures - 1);
+    const image = this.__image();
+    if (this._gestures === 0 && this._fullSrc) {
+      if (image) {
+        image.src = this._fullSrc;
+      }
+      this._fullSrc = undefined;
+    }
+  }
+
+  /**
+   * Displays the selected item of the gallery, and prefetches its neighbours.
+   */
+  __showGalleryItem() {
+    const item = this.gallery?.[this.galleryIndex];
+    if (!item) {
+      // back to the source set by the server
+      this._gallerySrc = undefined;
+      this._galleryResample = undefined;
+      return;
+    }
+    this._gallerySrc = this.getAttribute(`gallery-${this.galleryIndex}`);
+    this._galleryResample = item.resample;
+
+    const current = this.__initialSrc();
+    const urls = new Set<string>();
+    for (const index of [this.galleryIndex - 1, this.galleryIndex + 1]) {
+      const url = this.__galleryUrl(index);
+      if (url) {
+        urls.add(url);
+      }
+    }
+    for (const [url, img] of this._prefetched) {
+      if (!urls.has(url) && url !== current) {
+        img.src = "";
+        this._prefetched.delete(url);
+      }
+    }
+    for (const url of urls) {
+      if (!this._prefetched.has(url)) {
+        const img = new Image();
+        img.decoding = "async";
+        img.src = url;
+        img.decode().catch(() => this._prefetched.delete(url));
+        this._prefetched.set(url, img);
+      }
+    }
+  }
+
+  __galleryUrl(index: number) {
+    const item = this.gallery?.[index];
+    const url = item && this.getAttribute(`gallery-${index}`);
+    if (!url || !item.resample) {
+      return url;
+    }
+    // neighbours are displayed in the same container, so they are resampled to the same size
+    const w = this.__resampleWidths(item.resample)[0];
+    return w < item.resample.width ? this.__withParams(url, `w=${w}`) : url;
+  }
+
+  /**
+   * Switches to a larger rendition when the image is displayed at more device pixels than the
+   * loaded one has. The transform is kept, since all the renditions have the same aspect ratio.
+   */
+  __updateResolution() {
+    const ladder = this.__ladder();
+    if (!ladder.length || this._loadedWidth >= ladder[ladder.length - 1].width) {
+      return;
+    }
+    const image = this.__image();
+    const needed = image ? image.getBoundingClientRect().width * window.devicePixelRatio : 0;
+    if (needed > this._loadedWidth) {
+      // the smallest rendition that is sharp at the current zoom ratio
+      const rendition = ladder.find((r) => r.width >= needed) || ladder[ladder.length - 1];
+      this._loadedWidth = rendition.width;
+      this.__swapImage(rendition.url);
+      return;
+    }
+
+    // while zooming in, fetch the rendition that will be needed next
+    const growth = this._motion?.vw || 0;
+    const predicted = needed * (1 + growth * PREFETCH_LOOKAHEAD);
+    if (growth > 0 && predicted > this._loadedWidth) {
+      const next = ladder.find((r) => r.width >= predicted) || ladder[ladder.length - 1];
+      this.__prefetch(next.url, () => {
+        if (!this._prefetched.has(next.url)) {
+          const img = new Image();
+          img.decoding = "async";
+          img.src = next.url;
+          img.decode().catch(() => this._prefetched.delete(next.url));
+          this._prefetched.set(next.url, img);
+        }
+      });
+    }
+  }
+
+  /**
+   * Tracks the velocity of the image from its position and size on successive frames. Velocities
+   * are in pixels per millisecond, and the growth of the width per millisecond.
+   */
+  __trackMotion(rect: DOMRect) {
+    const time = performance.now();
+    const x = rect.left + rect.width / 2;
+    const y = rect.top + rect.height / 2;
+    const last = this._motion;
+    let vx = 0;
+    let vy = 0;
+    let vw = 0;
+    if (last && last.width && time - last.time < 200) {
+      // smooth out the jitter of individual events
+      const dt = Math.max(1, time - last.time);
+      vx = (last.vx + (x - last.x) / dt) / 2;
+      vy = (last.vy + (y - last.y) / dt) / 2;
+      vw = (last.vw + (rect.width / last.width - 1) / dt) / 2;
+    }
+    this._motion = { time, x, y, width: rect.width, vx, vy, vw };
+  }
+
+  /**
+   * Requests a URL that is likely to be displayed soon, with low priority and marked as
+   * speculative, unless the prefetch budget is exhausted. The response is kept in the HTTP cache.
+   * The body is read completely, so that the response is stored and the budget slot is only
+   * released once the download is over.
+   */
+  __prefetch(url: string, then?: () => void) {
+    if (this._speculative.has(url) || this._speculativeInFlight >= (this.prefetchBudget || 0)) {
+      return;
+    }
+    if (this._speculative.size > 256) {
+      this._speculative.clear();
+    }
+    this._speculative.add(url);
+    this._speculativeInFlight++;
+    fetch(url, { priority: "low", headers: { [PREFETCH_HEADER]: "1" } } as RequestInit)
+      .then(async (response) => {
+        if (!response.ok) {
+          // the server was busy with visible requests: try again later
+          this._speculative.delete(url);
+          await response.body?.cancel();
+          return;
+        }
+        await response.arrayBuffer();
+        then?.();
+      })
+      .catch(() => this._speculative.delete(url))
+      .finally(() => this._speculativeInFlight--);
+  }
+
+  __resetTiles() {
+    this._tileLayer?.remove();
+    this._tileLayer = undefined;
+    this._tileImages.clear();
+    this._visibleTiles.clear();
+    this._tileLevel = -1;
+    this._speculative.clear();
+    this.__scheduleViewportUpdate();
+  }
+
+  __scheduleViewportUpdate() {
+    if ((this.tiles || this.__resample() || this.renditions) && !this._viewportFrame) {
+      this._viewportFrame = requestAnimationFrame(() => {
+        this._viewportFrame = 0;
+        const image = this.__image();
+        if (image) {
+          this.__trackMotion(image.getBoundingClientRect());
+        }
+        this.__updateTiles();
+        this.__updateResolution();
+      });
+    }
+  }
+
+  __updateTiles() {
+    const tiles = this.tiles;
+    const image = this._zoomistElement?.querySelector(".zoomist-image") as HTMLElement;
+    if (!tiles || !image?.parentElement) {
+      return;
+    }
+    if (!this._tileLayer) {
+      this._tileLayer = document.createElement("div");
+      this._tileLayer.classList.add("zoomist-tiles");
+      image.parentElement.appendChild(this._tileLayer);
+    }
+
+    // position the tile layer exactly over the (low resolution) zoomist image
+    const viewport = this._zoomistElement.getBoundingClientRect();
+    const parent = image.parentElement.getBoundingClientRect();
+    const rect = image.getBoundingClientRect();
+    if (!rect.width || !rect.height) {
+      return;
+    }
+    const layer = this._tileLayer;
+    layer.style.left = `${rect.left - parent.left}px`;
+    layer.style.top = `${rect.top - parent.top}px`;
+    layer.style.width = `${rect.width}px`;
+    layer.style.height = `${rect.height}px`;
+
+    const { level, span, x0, y0, x1, y1 } = this.__tileRange(rect, viewport);
+    this._tileLevel = level;
+    this._visibleTiles.clear();
+    for (let y = y0; y < y1; y++) {
+      for (let x = x0; x < x1; x++) {
+        const key = `${level}/${x}/${y}`;
+        this._visibleTiles.add(key);
+        if (!this._tileImages.has(key)) {
+          this.__loadTile(key, level, x, y, span);
+        }
+      }
+    }
+    this.__pruneTiles();
+    this.__prefetchTiles(rect, viewport);
+  }
+
+  /**
+   * Returns the pyramid level and the range of tiles that cover the viewport when the image
+   * occupies the given rectangle.
+   */
+  __tileRange(rect: DOMRect, viewport: DOMRect) {
+    const tiles = this.tiles;
+    // pick the coarsest level that still has at least one pixel per device pixel
+    const scale = (rect.width * window.devicePixelRatio) / tiles.width;
+    const level = Math.min(tiles.levels - 1, Math.max(0, Math.floor(Math.log2(1 / scale))));
+
+    // visible region, in pixels of the full resolution image
+    const factor = tiles.width / rect.width;
+    const span = tiles.tileSize * 2 ** level;
+    return {
+      level,
+      span,
+      x0: Math.floor(Math.max(0, (viewport.left - rect.left) * factor) / span),
+      y0: Math.floor(Math.max(0, (viewport.top - rect.top) * factor) / span),
+      x1: Math.ceil(Math.min(tiles.width, (viewport.right - rect.left) * factor) / span),
+      y1: Math.ceil(Math.min(tiles.height, (viewport.bottom - rect.top) * factor) / span),
+    };
+  }
+
+  /**
+   * Prefetches the tiles that will cover the viewport if the image keeps moving and zooming at
+   * its current velocity, nearest to the center of the viewport first.
+   */
+  __prefetchTiles(rect: DOMRect, viewport: DOMRect) {
+    const motion = this._motion;
+    if (!motion || (!motion.vx && !motion.vy && !motion.vw) || !this.prefetchBudget) {
+      return;
+    }
+    const growth = Math.max(0.25, 1 + motion.vw * PREFETCH_LOOKAHEAD);
+    const width = rect.width * growth;
+    const height = rect.height * growth;
+    const predicted = new DOMRect(
+      motion.x + motion.vx * PREFETCH_LOOKAHEAD - width / 2,
+      motion.y + motion.vy * PREFETCH_LOOKAHEAD - height / 2,
+      width,
+      height
+    );
+    const { level, span, x0, y0, x1, y1 } = this.__tileRange(predicted, viewport);
+    const factor = this.tiles.width / predicted.width;
+    const cx = ((viewport.left + viewport.width / 2 - predicted.left) * factor) / span - 0.5;
+    const cy = ((viewport.top + viewport.height / 2 - predicted.top) * factor) / span - 0.5;
+    const candidates: { x: number; y: number; distance: number }[] = [];
+    for (let y = y0; y < y1; y++) {
+      for (let x = x0; x < x1; x++) {
+        if (!this._tileImages.has(`${level}/${x}/${y}`)) {
+          candidates.push({ x, y, distance: (x - cx) ** 2 + (y - cy) ** 2 });
+        }
+      }
+    }
+    candidates.sort((a, b) => a.distance - b.distance);
+    for (const { x, y } of candidates) {
+      this.__prefetch(this.__tileUrl(level, x, y));
+    }
+  }
+
+  __tileUrl(level: number, x: number, y: number) {
+    return this.__withParams(this.__src(), `level=${level}&x=${x}&y=${y}`);
+  }
+
+  __loadTile(key: string, level: number, x: number, y: number, span: number) {
+    const tiles = this.tiles;
+    const img = document.createElement("img");
+    img.draggable = false;
+    img.dataset.level = String(level);
+    img.style.zIndex = String(tiles.levels - level);
+    img.style.left = `${(x * span * 100) / tiles.width}%`;
+    img.style.top = `${(y * span * 100) / tiles.height}%`;
+    img.style.width = `${(Math.min(span, tiles.width - x * span) * 100) / tiles.width}%`;
+    img.style.height = `${(Math.min(span, tiles.height - y * span) * 100) / tiles.height}%`;
+    img.onload = () => {
+      img.classList.add("loaded");
+      this.__pruneTiles();
+    };
+    img.src = this.__tileUrl(level, x, y);
+    this._tileImages.set(key, img);
+    this._tileLayer!.appendChild(img);
+  }
+
+  __pruneTiles() {
+    // tiles from other levels are kept until the visible tiles of the current level are loaded
+    const complete = [...this._visibleTiles].every(
+      (key) => this._tileImages.get(key)?.complete
+    );
+    const level = String(this._tileLevel);
+    for (const [key, img] of this._tileImages) {
+      if (!this._visibleTiles.has(key) && (complete || img.dataset.level === level)) {
+        img.remove();
+        this._tileImages.delete(key);
+      }
+    }
+  }
+
+  /**
+   * Tracks listeners as the DOM does: a listener is registered once per type and capture flag, and
+   * a "once" listener is unregistered after it is invoked or when its signal is aborted.
+   */
+  addEventListener(type: string, listener: any, options?: any) {
+    const capture = typeof options === "boolean" ? options : !!options?.capture;
+    const registered = this.__registeredListeners(type, capture);
+    if (!listener || registered.has(listener) || options?.signal?.aborted) {
+      super.addEventListener(type, listener, options);
+      return;
+    }
+
+    let handler = listener;
+    if (typeof options === "object" && options.once) {
+      const self = this;
+      handler = function (this: any, event: Event) {
+        self.removeEventListener(type, listener, capture);
+        return typeof listener === "function"
+          ? listener.call(this, event)
+          : listener.handleEvent(event);
+      };
+      options = { ...options, once: false };
+    }
+    registered.set(listener, handler);
+    super.addEventListener(type, handler, options);
+    options?.signal?.addEventListener("abort", () =>
+      this.removeEventListener(type, listener, capture)
+    );
+  }
+
+  removeEventListener(type: string, listener: any, options?: any) {
+    const capture = typeof options === "boolean" ? options : !!options?.capture;
+    const registered = this.__registeredListeners(type, capture);
+    super.removeEventListener(type, registered.get(listener) ?? listener, options);
+    registered.delete(listener);
+  }
+
+  __registeredListeners(type: string, capture: boolean) {
+    let byCapture = this._listeners.get(type);
+    if (!byCapture) {
+      this._listeners.set(type, (byCapture = new Map()));
+    }
+    let registered = byCapture.get(capture);
+    if (!registered) {
+      byCapture.set(capture, (registered = new Map()));
+    }
+    return registered;
+  }
+
+  __hasListeners(type: string) {
+    const byCapture = this._listeners.get(type);
+    return !!byCapture && [...byCapture.values()].some((registered) => registered.size > 0);
+  }
+
+  /**
+   * Dispatches an event if anyone listens to it. Coalesced events are flushed first, so that events
+   * are received in the order they happened.
+   */
+  __fire(type: string, detail?: any) {
+    this.__flushEvents();
+    if (this.__hasListeners(type)) {
+      this.dispatchEvent(new CustomEvent(type, { detail }));
+    }
+  }
+
+  /**
+   * Schedules an event to be dispatched in the next animation frame, if anyone listens to it.
+   * Returns the detail object of the pending event, which is reused until the event is dispatched,
+   * so that callers only need to update it with the latest values.
+   */
+  __coalesce(type: string) {
+    if (!this.__hasListeners(type)) {
+      return undefined;
+    }
+    let detail = this._pendingEvents.get(type);
+    if (!detail) {
+      detail = {};
+      this._pendingEvents.set(type, detail);
+    }
+    if (!this._eventFrame) {
+      this._eventFrame = requestAnimationFrame(() => {
+        this._eventFrame = 0;
+        this.__flushEvents();
+      });
+    }
+    return detail;
+  }
+
+  __flushEvents() {
+    if (this._eventFrame) {
+      cancelAnimationFrame(this._eventFrame);
+      this._eventFrame = 0;
+    }
+    for (const [type, detail] of this._pendingEvents) {
+      this._pendingEvents.delete(type);
+      this.dispatchEvent(new CustomEvent(type, { detail }));
+    }
+  }
+
   __registerEventListeners() {
     this._zoomist.on("ready", () => {
-      this.dispatchEvent(new CustomEvent("zoomist-ready"));
+      this._ready = true;
+      const commands = this._pendingCommands;
+      this._pendingCommands = [];
+      for (const [name, ...args] of commands) {
+        this._zoomist[name](...args);
+      }
+      if (this._pendingSrc) {
+        this.__swapImage(this._pendingSrc);
+        this._pendingSrc = undefined;
+      } else if (this.__image()) {
+        this.__prepareLowQuality(this.__image()!);
+      }
+      this.__scheduleViewportUpdate();
+      this.__fire("zoomist-ready", this.__containerSize());
     });
     this._zoomist.on("zoom", (ratio) => {
-      this.dispatchEvent(
-        new CustomEvent("zoomist-zoom", { detail: { ratio: ratio } })
-      );
+      this.__scheduleViewportUpdate();
+      const detail = this.__coalesce("zoomist-zoom");
+      if (detail) {
+        Object.assign(detail, { ratio }, this.__imageOffset());
+      }
     });
     this._zoomist.on("wheel", (event) => {
-      this.dispatchEvent(new CustomEvent("zoomist-wheel"));
+      this.__coalesce("zoomist-wheel");
     });
     this._zoomist.on("dragStart", (transform, event) => {
-      this.dispatchEvent(
-        new CustomEvent("zoomist-drag-start", {
-          detail: { offsetX: transform.x, offsetY: transform.y },
-        })
-      );
+      this.__startInteraction();
+      this.__fire("zoomist-drag-start", { offsetX: transform.x, offsetY: transform.y });
     });
     this._zoomist.on("drag", (transform, event) => {
-      this.dispatchEvent(
-        new CustomEvent("zoomist-drag", {
-          detail: { offsetX: transform.x, offsetY: transform.y },
-        })
-      );
+      this.__scheduleViewportUpdate();
+      const detail = this.__coalesce("zoomist-drag");
+      if (detail) {
+        detail.offsetX = transform.x;
+        detail.offsetY = transform.y;
+      }
     });
     this._zoomist.on("dragEnd", (transform, event) => {
-      this.dispatchEvent(
-        new CustomEvent("zoomist-drag-end", {
-          detail: { offsetX: transform.x, offsetY: transform.y },
-        })
-      );
+      this.__endInteraction();
+      this.__scheduleViewportUpdate();
+      this.__fire("zoomist-drag-end", { offsetX: transform.x, offsetY: transform.y });
     });
     this._zoomist.on("slideStart", (value, event) => {
-      this.dispatchEvent(
-        new CustomEvent("zoomist-slide-start", { detail: { value: value } })
-      );
+      this.__startInteraction();
+      this.__fire("zoomist-slide-start", { value: value });
     });
     this._zoomist.on("slide", (value, event) => {
-      this.dispatchEvent(
-        new CustomEvent("zoomist-slide", { detail: { value: value } })
-      );
+      this.__scheduleViewportUpdate();
+      const detail = this.__coalesce("zoomist-slide");
+      if (detail) {
+        detail.value = value;
+      }
     });
     this._zoomist.on("slideEnd", (value, event) => {
-      this.dispatchEvent(
-        new CustomEvent("zoomist-slide-end", { detail: { value: value } })
-      );
+      this.__endInteraction();
+      this.__fire("zoomist-slide-end", { value: value, ...this.__imageOffset() });
     });
     this._zoomist.on("pinchStart", (value, event) => {
-      this.dispatchEvent(new CustomEvent("zoomist-pinch-start"));
+      this.__startInteraction();
+      this.__fire("zoomist-pinch-start");
     });
     this._zoomist.on("pinch", (event) => {
-      this.dispatchEvent(new CustomEvent("zoomist-pinch"));
+      this.__scheduleViewportUpdate();
+      this.__coalesce("zoomist-pinch");
     });
     this._zoomist.on("pinchEnd", (event) => {
-      this.dispatchEvent(new CustomEvent("zoomist-pinch-end"));
+      this.__endInteraction();
+      this.__fire("zoomist-pinch-end");
     });
     this._zoomist.on("resize", (event) => {
-      this.dispatchEvent(new CustomEvent("zoomist-resize"));
+      this.__scheduleViewportUpdate();
+      const detail = this.__coalesce("zoomist-resize");
+      if (detail) {
+        Object.assign(detail, this.__containerSize());
+      }
     });
     this._zoomist.on("reset", () => {
-      this.dispatchEvent(new CustomEvent("zoomist-reset"));
+      this.__scheduleViewportUpdate();
+      this.__fire("zoomist-reset");
     });
     this._zoomist.on("destroy", () => {
-      this.dispatchEvent(new CustomEvent("zoomist-destroy"));
+      this.__fire("zoomist-destroy");
     });
     this._zoomist.on("update", () => {
-      this.dispatchEvent(new CustomEvent("zoomist-update"));
+      this.__scheduleViewportUpdate();
+      this.__fire("zoomist-update");
     });
   }
 }
@@ -0,0 +1,96 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpCachingTest {
+
+  private static final String ETAG = HttpCaching.etag("source");
+
+  private static final long LAST_MODIFIED = 1_700_000_000_123L;
+
+  @Test
+  public void testParseRange() {
+    Assert.assertArrayEquals(new long[] {0, 99}, HttpCaching.parseRange("bytes=0-99", 1000));
+    Assert.assertArrayEquals(new long[] {500, 999}, HttpCaching.parseRange("bytes=500-", 1000));
+    Assert.assertArrayEquals(new long[] {900, 999}, HttpCaching.parseRange("bytes=-100", 1000));
+    // clamped to the content
+    Assert.assertArrayEquals(new long[] {990, 999}, HttpCaching.parseRange("bytes=990-2000", 1000));
+    Assert.assertArrayEquals(new long[] {0, 999}, HttpCaching.parseRange("bytes=-2000", 1000));
+  }
+
+  @Test
+  public void testUnsupportedRangesSendTheWholeContent() {
+    Assert.assertNull(HttpCaching.parseRange("items=0-99", 1000));
+    Assert.assertNull(HttpCaching.parseRange("bytes=0-9,20-29", 1000));
+    Assert.assertNull(HttpCaching.parseRange("bytes=99-0", 1000));
+    Assert.assertNull(HttpCaching.parseRange("bytes=abc", 1000));
+    Assert.assertNull(HttpCaching.parseRange("bytes=a-b", 1000));
+  }
+
+  @Test
+  public void testUnsatisfiableRanges() {
+    // answered with 416 Range Not Satisfiable
+    Assert.assertSame(HttpCaching.UNSATISFIABLE, HttpCaching.parseRange("bytes=1000-", 1000));
+    Assert.assertSame(HttpCaching.UNSATISFIABLE, HttpCaching.parseRange("bytes=-0", 1000));
+    Assert.assertSame(HttpCaching.UNSATISFIABLE, HttpCaching.parseRange("bytes=0-99", 0));
+  }
+
+  @Test
+  public void testIfNoneMatch() {
+    Assert.assertTrue(HttpCaching.isNotModified(ETAG, -1, ETAG, LAST_MODIFIED));
+    Assert.assertTrue(HttpCaching.isNotModified("W/" + ETAG, -1, ETAG, LAST_MODIFIED));
+    Assert.assertTrue(HttpCaching.isNotModified("\"other\", " + ETAG, -1, ETAG, LAST_MODIFIED));
+    Assert.assertTrue(HttpCaching.isNotModified("*", -1, ETAG, LAST_MODIFIED));
+    Assert.assertFalse(HttpCaching.isNotModified("\"other\"", -1, ETAG, LAST_MODIFIED));
+    // If-Modified-Since is ignored when If-None-Match is present
+    Assert.assertFalse(
+        HttpCaching.isNotModified("\"other\"", LAST_MODIFIED, ETAG, LAST_MODIFIED));
+  }
+
+  @Test
+  public void testIfModifiedSince() {
+    // dates in HTTP headers have a resolution of seconds
+    Assert.assertTrue(HttpCaching.isNotModified(null, 1_700_000_000_000L, ETAG, LAST_MODIFIED));
+    Assert.assertTrue(HttpCaching.isNotModified(null, 1_700_000_001_000L, ETAG, LAST_MODIFIED));
+    Assert.assertFalse(HttpCaching.isNotModified(null, 1_699_999_999_000L, ETAG, LAST_MODIFIED));
+    Assert.assertFalse(HttpCaching.isNotModified(null, -1, ETAG, LAST_MODIFIED));
+    Assert.assertFalse(HttpCaching.isNotModified(null, 1_700_000_000_000L, ETAG, 0));
+  }
+
+  @Test
+  public void testIfRange() {
+    Assert.assertTrue(HttpCaching.isRangeApplicable(null, -1, ETAG, LAST_MODIFIED));
+    Assert.assertTrue(HttpCaching.isRangeApplicable(ETAG, -1, ETAG, LAST_MODIFIED));
+    Assert.assertFalse(HttpCaching.isRangeApplicable("\"other\"", -1, ETAG, LAST_MODIFIED));
+    // weak tags never match in If-Range
+    Assert.assertFalse(HttpCaching.isRangeApplicable("W/" + ETAG, -1, ETAG, LAST_MODIFIED));
+
+    String date = "Tue, 14 Nov 2023 22:13:20 GMT";
+    Assert.assertTrue(
+        HttpCaching.isRangeApplicable(date, 1_700_000_000_000L, ETAG, LAST_MODIFIED));
+    Assert.assertFalse(
+        HttpCaching.isRangeApplicable(date, 1_699_999_999_000L, ETAG, LAST_MODIFIED));
+    Assert.assertFalse(HttpCaching.isRangeApplicable(date, 1_700_000_000_000L, ETAG, 0));
+  }
+
+}
@@ -0,0 +1,47 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.test;
+
+import com.flowingcode.vaadin.addons.zoomist.Zoomist;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GalleryTest {
+
+  @Test
+  public void testSettingSourceLeavesGallery() {
+    Zoomist zoomist = new Zoomist("a.png");
+    zoomist.setGallery(List.of("b.png", "c.png"));
+    zoomist.next();
+    Assert.assertEquals(1, zoomist.getGalleryIndex());
+    Assert.assertEquals("c.png", zoomist.getElement().getAttribute("gallery-1"));
+
+    zoomist.setSrc("a.png");
+    Assert.assertEquals(-1, zoomist.getGalleryIndex());
+    Assert.assertFalse(zoomist.getElement().hasAttribute("gallery-0"));
+    Assert.assertFalse(zoomist.getElement().hasProperty("gallery"));
+    Assert.assertFalse(zoomist.getElement().hasProperty("galleryIndex"));
+
+    zoomist.next();
+    Assert.assertEquals(-1, zoomist.getGalleryIndex());
+  }
+
+}
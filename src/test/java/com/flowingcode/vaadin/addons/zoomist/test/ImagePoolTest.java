@@ -0,0 +1,109 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.test;
+
+import com.flowingcode.vaadin.addons.zoomist.image.ImagePool;
+import com.flowingcode.vaadin.addons.zoomist.image.ImageResampler;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImagePoolTest {
+
+  @Test
+  public void testImagesAreRecycledByTypeAndDimensions() {
+    ImagePool pool = new ImagePool(2, 1024 * 1024);
+    BufferedImage image = pool.borrowImage(BufferedImage.TYPE_INT_RGB, 10, 20);
+    pool.releaseImage(image);
+    Assert.assertNotSame(image, pool.borrowImage(BufferedImage.TYPE_INT_RGB, 20, 10));
+    Assert.assertSame(image, pool.borrowImage(BufferedImage.TYPE_INT_RGB, 10, 20));
+  }
+
+  @Test
+  public void testIdleImagesAreBounded() {
+    // each image takes 400 bytes, so only two of them are kept
+    ImagePool pool = new ImagePool(4, 1000);
+    BufferedImage first = pool.borrowImage(BufferedImage.TYPE_INT_RGB, 10, 10);
+    BufferedImage second = pool.borrowImage(BufferedImage.TYPE_INT_RGB, 10, 10);
+    BufferedImage third = pool.borrowImage(BufferedImage.TYPE_INT_ARGB, 10, 10);
+    pool.releaseImage(first);
+    pool.releaseImage(second);
+    pool.releaseImage(third);
+    Assert.assertSame(third, pool.borrowImage(BufferedImage.TYPE_INT_ARGB, 10, 10));
+    BufferedImage kept = pool.borrowImage(BufferedImage.TYPE_INT_RGB, 10, 10);
+    Assert.assertTrue(kept == first || kept == second);
+    Assert.assertNotSame(first, pool.borrowImage(BufferedImage.TYPE_INT_RGB, 10, 10));
+  }
+
+  @Test
+  public void testReadersAndWritersAreRecycled() throws IOException {
+    ImagePool pool = new ImagePool(2, 0);
+    ImageWriter writer = pool.borrowWriter("png");
+    pool.releaseWriter(writer);
+    Assert.assertSame(writer, pool.borrowWriter("png"));
+
+    byte[] data = ImageResampler.encode(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "png");
+    try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+      ImageReader reader = pool.borrowReader(iis);
+      Assert.assertEquals(8, reader.getWidth(0));
+      pool.releaseReader(reader);
+      Assert.assertNull(reader.getInput());
+    }
+  }
+
+  @Test
+  public void testBuffersAreRecycled() throws IOException {
+    ImagePool pool = new ImagePool(2, 0);
+    ImagePool.Buffer buffer = pool.borrowBuffer();
+    buffer.write(new byte[] {1, 2, 3});
+    buffer.seek(0);
+    buffer.write(9);
+    Assert.assertArrayEquals(new byte[] {9, 2, 3}, buffer.toByteArray());
+    pool.releaseBuffer(buffer);
+
+    Assert.assertSame(buffer, pool.borrowBuffer());
+    Assert.assertEquals(0, buffer.size());
+    for (String format : new String[] {"png", "jpeg"}) {
+      byte[] data = ImageResampler.encode(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB),
+          format);
+      Assert.assertEquals(8, ImageIO.read(new ByteArrayInputStream(data)).getWidth());
+    }
+  }
+
+  @Test
+  public void testRecycledImagesAreOverwritten() {
+    BufferedImage source = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+    BufferedImage stale = ImagePool.getDefault().borrowImage(BufferedImage.TYPE_INT_ARGB, 10, 10);
+    stale.setRGB(0, 0, 0xffff0000);
+    ImagePool.getDefault().releaseImage(stale);
+
+    BufferedImage result =
+        ImageResampler.resample(source, new Rectangle(0, 0, 100, 100), 10, 10, true);
+    Assert.assertEquals(0, result.getRGB(0, 0));
+  }
+
+}
@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.test;
+
+import com.flowingcode.vaadin.addons.zoomist.image.PyramidBuilder;
+import com.flowingcode.vaadin.addons.zoomist.image.TilePyramid;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PyramidBuilderTest {
+
+  @Test
+  public void testAllTilesAreWritten() throws IOException {
+    BufferedImage image = new BufferedImage(600, 400, BufferedImage.TYPE_INT_RGB);
+    TilePyramid pyramid = new TilePyramid(600, 400, 256);
+    Map<String, byte[]> tiles = new ConcurrentHashMap<>();
+    AtomicInteger progress = new AtomicInteger();
+
+    PyramidBuilder builder = new PyramidBuilder(pyramid, PyramidBuilder.of(image, false), "png")
+        .setProgressListener((completed, total) -> progress.accumulateAndGet(completed, Math::max));
+    builder.build((level, column, row, data) -> tiles.put(level + "/" + column + "/" + row, data));
+
+    // level 0: 3x2 tiles, level 1: 2x1 tiles, level 2: 1 tile
+    Assert.assertEquals(9, builder.getTileCount());
+    Assert.assertEquals(9, tiles.size());
+    Assert.assertEquals(9, progress.get());
+    Assert.assertTrue(tiles.containsKey("0/2/1"));
+    Assert.assertTrue(tiles.containsKey("2/0/0"));
+  }
+
+  @Test
+  public void testSourcePixelsAreReadOnce() throws IOException {
+    // spanning several read blocks
+    BufferedImage image = TestImages.redAndBlue(3000, 1000);
+
+    TilePyramid pyramid = new TilePyramid(3000, 1000, 256);
+    PyramidBuilder.Source source = PyramidBuilder.of(image, false);
+    AtomicLong pixels = new AtomicLong();
+    Map<String, byte[]> tiles = new ConcurrentHashMap<>();
+    PyramidBuilder builder = new PyramidBuilder(pyramid, (region, width, height) -> {
+      pixels.addAndGet((long) region.width * region.height);
+      return source.read(region, width, height);
+    }, "png");
+    builder.build((level, column, row, data) -> tiles.put(level + "/" + column + "/" + row, data));
+
+    Assert.assertEquals(3000L * 1000, pixels.get());
+    Assert.assertEquals(builder.getTileCount(), tiles.size());
+    for (int level = 0; level < pyramid.getLevels(); level++) {
+      int columns = pyramid.getColumns(level);
+      int rows = pyramid.getRows(level);
+      BufferedImage first = decode(tiles.get(level + "/0/" + (rows - 1)));
+      BufferedImage last = decode(tiles.get(level + "/" + (columns - 1) + "/0"));
+      Assert.assertEquals(pyramid.getTileBounds(level, 0, rows - 1).height, first.getHeight());
+      Assert.assertEquals(0xffff0000, first.getRGB(0, first.getHeight() - 1));
+      Assert.assertEquals(0xff0000ff, last.getRGB(last.getWidth() - 1, 0));
+    }
+  }
+
+  private static BufferedImage decode(byte[] data) throws IOException {
+    return ImageIO.read(new ByteArrayInputStream(data));
+  }
+
+  @Test(expected = IOException.class)
+  public void testSinkFailureIsReported() throws IOException {
+    BufferedImage image = new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB);
+    new PyramidBuilder(new TilePyramid(300, 300, 256), PyramidBuilder.of(image, false), "png")
+        .build((level, column, row, data) -> {
+          throw new IOException("disk full");
+        });
+  }
+
+}
@@ -0,0 +1,104 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.test;
+
+import com.flowingcode.vaadin.addons.zoomist.image.RasterFile;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RasterFileTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+
+  @Test
+  public void testConvertedRasterIsCutWithoutDecoding() throws IOException {
+    byte[] data = TestImages.toPng(TestImages.redAndBlue(1200, 600));
+    File file = new File(folder.getRoot(), "image.raster");
+    RasterFile.convert(() -> ImageIO.createImageInputStream(new ByteArrayInputStream(data)),
+        file, "image#1");
+
+    RasterFile raster = RasterFile.open(file);
+    Assert.assertEquals(1200, raster.getWidth());
+    Assert.assertEquals(600, raster.getHeight());
+    Assert.assertEquals("image#1", raster.getSourceId());
+    Assert.assertFalse(raster.hasAlpha());
+    // 1200, 600, 300 and 150 pixels wide
+    Assert.assertEquals(4, raster.getLevels());
+
+    BufferedImage tile = raster.read(new Rectangle(600, 0, 256, 256), 256, 256, false);
+    Assert.assertEquals(256, tile.getWidth());
+    Assert.assertEquals(Color.BLUE.getRGB(), tile.getRGB(128, 128));
+
+    BufferedImage overview = raster.read(new Rectangle(0, 0, 1200, 600), 100, 50, false);
+    Assert.assertEquals(100, overview.getWidth());
+    Assert.assertEquals(Color.RED.getRGB(), overview.getRGB(10, 25));
+    Assert.assertEquals(Color.BLUE.getRGB(), overview.getRGB(90, 25));
+  }
+
+  @Test
+  public void testSourceIsDecodedInOnePass() throws IOException {
+    BufferedImage image = TestImages.redAndBlue(1200, 600);
+    for (int type : new int[] {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_BYTE_GRAY}) {
+      // an image with alpha, and another one that is not decoded to the raster layout
+      BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), type);
+      Graphics2D g = converted.createGraphics();
+      g.drawImage(image, 0, 0, null);
+      g.dispose();
+      byte[] png = TestImages.toPng(converted);
+
+      AtomicInteger opens = new AtomicInteger();
+      File file = new File(folder.getRoot(), type + ".raster");
+      RasterFile raster = RasterFile.convert(() -> {
+        opens.incrementAndGet();
+        return ImageIO.createImageInputStream(new ByteArrayInputStream(png));
+      }, file, "image#" + type);
+
+      Assert.assertEquals(1, opens.get());
+      Assert.assertEquals(type == BufferedImage.TYPE_INT_ARGB, raster.hasAlpha());
+      BufferedImage expected = new BufferedImage(1200, 600, BufferedImage.TYPE_INT_ARGB);
+      g = expected.createGraphics();
+      g.drawImage(ImageIO.read(new ByteArrayInputStream(png)), 0, 0, null);
+      g.dispose();
+      BufferedImage region = raster.read(new Rectangle(0, 0, 1200, 600), 1200, 600, true);
+      for (int x = 0; x < 1200; x += 100) {
+        Assert.assertEquals(expected.getRGB(x, 300), region.getRGB(x, 300));
+      }
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidFileIsRejected() throws IOException {
+    RasterFile.open(folder.newFile("invalid.raster"));
+  }
+
+}
@@ -0,0 +1,54 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.test;
+
+import com.flowingcode.vaadin.addons.zoomist.image.RegionDecoder;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RegionDecoderTest {
+
+
+  @Test
+  public void testRegionIsSubsampled() throws IOException {
+    byte[] data = TestImages.toPng(TestImages.redAndBlue(400, 200));
+    BufferedImage region = RegionDecoder.decode(
+        () -> ImageIO.createImageInputStream(new ByteArrayInputStream(data)),
+        new Rectangle(200, 0, 200, 200), 50, 50);
+
+    Assert.assertEquals(50, region.getWidth());
+    Assert.assertEquals(50, region.getHeight());
+    Assert.assertEquals(Color.BLUE.getRGB(), region.getRGB(25, 25));
+  }
+
+  @Test
+  public void testSubsamplingKeepsTargetSize() {
+    Assert.assertEquals(1, RegionDecoder.getSubsampling(100, 100));
+    Assert.assertEquals(1, RegionDecoder.getSubsampling(100, 300));
+    Assert.assertEquals(3, RegionDecoder.getSubsampling(1000, 300));
+  }
+
+}
@@ -0,0 +1,50 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.test;
+
+import com.flowingcode.vaadin.addons.zoomist.image.RenderScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RenderSchedulerTest {
+
+  @Test
+  public void testSpeculativeRequestsAreLimited() {
+    RenderScheduler scheduler = new RenderScheduler(2);
+    Assert.assertTrue(scheduler.tryBeginSpeculative());
+    Assert.assertTrue(scheduler.tryBeginSpeculative());
+    Assert.assertFalse(scheduler.tryBeginSpeculative());
+
+    scheduler.endSpeculative();
+    Assert.assertTrue(scheduler.tryBeginSpeculative());
+  }
+
+  @Test
+  public void testVisibleRequestsHavePriority() {
+    RenderScheduler scheduler = new RenderScheduler(2);
+    scheduler.beginVisible();
+    Assert.assertFalse(scheduler.tryBeginSpeculative());
+    Assert.assertEquals(1, scheduler.getVisibleCount());
+
+    scheduler.endVisible();
+    Assert.assertTrue(scheduler.tryBeginSpeculative());
+  }
+
+}
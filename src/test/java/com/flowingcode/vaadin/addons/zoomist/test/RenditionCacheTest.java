@@ -0,0 +1,86 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.test;
+
+import com.flowingcode.vaadin.addons.zoomist.image.RenditionCache;
+import com.flowingcode.vaadin.addons.zoomist.image.RenditionKey;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RenditionCacheTest {
+
+  private static RenditionKey key(int x) {
+    return new RenditionKey("source", "tile", 0, x, 0);
+  }
+
+  @Test
+  public void testHitsAndMisses() throws Exception {
+    RenditionCache cache = new RenditionCache(100);
+    Assert.assertNull(cache.getIfPresent(key(0)));
+    byte[] data = cache.get(key(0), () -> new byte[10]);
+    Assert.assertSame(data, cache.get(key(0), () -> new byte[10]));
+
+    RenditionCache.Stats stats = cache.getStats();
+    Assert.assertEquals(1, stats.getHitCount());
+    Assert.assertEquals(2, stats.getMissCount());
+    Assert.assertEquals(10, stats.getSize());
+    Assert.assertEquals(1, stats.getEntryCount());
+
+    // lookups without loading are not recorded
+    Assert.assertTrue(cache.containsKey(key(0)));
+    Assert.assertFalse(cache.containsKey(key(1)));
+    Assert.assertEquals(1, cache.getStats().getHitCount());
+    Assert.assertEquals(2, cache.getStats().getMissCount());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() {
+    RenditionCache cache = new RenditionCache(30);
+    cache.put(key(0), new byte[10]);
+    cache.put(key(1), new byte[10]);
+    cache.put(key(2), new byte[10]);
+    Assert.assertNotNull(cache.getIfPresent(key(0)));
+
+    cache.put(key(3), new byte[10]);
+    Assert.assertNull(cache.getIfPresent(key(1)));
+    Assert.assertNotNull(cache.getIfPresent(key(0)));
+    Assert.assertEquals(1, cache.getStats().getEvictionCount());
+    Assert.assertEquals(30, cache.getStats().getSize());
+  }
+
+  @Test
+  public void testOversizedRenditionIsNotCached() {
+    RenditionCache cache = new RenditionCache(30);
+    cache.put(key(0), new byte[31]);
+    Assert.assertNull(cache.getIfPresent(key(0)));
+    Assert.assertEquals(0, cache.getStats().getSize());
+  }
+
+  @Test
+  public void testInvalidate() {
+    RenditionCache cache = new RenditionCache(100);
+    cache.put(key(0), new byte[10]);
+    cache.put(new RenditionKey("other", "tile", 0, 0, 0), new byte[10]);
+    cache.invalidate("source");
+    Assert.assertNull(cache.getIfPresent(key(0)));
+    Assert.assertEquals(10, cache.getStats().getSize());
+  }
+
+}
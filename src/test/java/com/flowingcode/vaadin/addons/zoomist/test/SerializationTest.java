@@ -19,6 +19,8 @@
  */
 package com.flowingcode.vaadin.addons.zoomist.test;
 
+import com.flowingcode.vaadin.addons.zoomist.EventPolicy;
+import com.flowingcode.vaadin.addons.zoomist.ZoomEvent;
 import com.flowingcode.vaadin.addons.zoomist.Zoomist;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -30,14 +32,16 @@ import org.junit.Test;
 
 public class SerializationTest {
 
-  private void testSerializationOf(Object obj) throws IOException, ClassNotFoundException {
+  private <T> T testSerializationOf(T obj) throws IOException, ClassNotFoundException {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
     try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
       oos.writeObject(obj);
     }
     try (ObjectInputStream in =
         new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
-      obj.getClass().cast(in.readObject());
+      @SuppressWarnings("unchecked")
+      T result = (T) obj.getClass().cast(in.readObject());
+      return result;
     }
   }
 
@@ -49,4 +53,17 @@ public class SerializationTest {
       Assert.fail("Problem while testing serialization: " + e.getMessage());
     }
   }
+
+  @Test
+  public void testEventPolicySerialization() throws ClassNotFoundException, IOException {
+    Assert.assertTrue(testSerializationOf(EventPolicy.disabled()).isDisabled());
+    Assert.assertFalse(testSerializationOf(EventPolicy.immediate()).isDisabled());
+    Assert.assertSame(EventPolicy.disabled(), testSerializationOf(EventPolicy.disabled()));
+    Assert.assertEquals(EventPolicy.throttle(100).toString(),
+        testSerializationOf(EventPolicy.throttle(100)).toString());
+
+    Zoomist zoomist = new Zoomist("");
+    zoomist.setEventPolicy(ZoomEvent.class, EventPolicy.disabled());
+    Assert.assertTrue(testSerializationOf(zoomist).getEventPolicy(ZoomEvent.class).isDisabled());
+  }
 }
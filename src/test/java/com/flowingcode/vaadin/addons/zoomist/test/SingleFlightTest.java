@@ -0,0 +1,90 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.test;
+
+import com.flowingcode.vaadin.addons.zoomist.image.SingleFlight;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+  private static final int THREADS = 8;
+
+  @Test
+  public void testConcurrentCallsAreCoalesced() throws Exception {
+    SingleFlight<String, Integer> flight = new SingleFlight<>();
+    AtomicInteger executions = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        results.add(executor.submit(() -> flight.execute("key", () -> {
+          executions.incrementAndGet();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return 42;
+        })));
+      }
+
+      // wait until every other thread has joined the flight in progress
+      while (flight.getWaiterCount() < THREADS - 1) {
+        Thread.onSpinWait();
+      }
+      release.countDown();
+
+      for (Future<Integer> result : results) {
+        Assert.assertEquals(Integer.valueOf(42), result.get(5, TimeUnit.SECONDS));
+      }
+      Assert.assertEquals(1, executions.get());
+      Assert.assertEquals(0, flight.getInFlightCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testFailureIsNotCached() throws Exception {
+    SingleFlight<String, Integer> flight = new SingleFlight<>();
+    try {
+      flight.execute("key", () -> {
+        throw new IOException("failed");
+      });
+      Assert.fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+    Assert.assertEquals(Integer.valueOf(1), flight.execute("key", () -> 1));
+  }
+
+}
@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.test;
+
+import com.flowingcode.vaadin.addons.zoomist.image.ArchiveTileStore;
+import com.flowingcode.vaadin.addons.zoomist.image.HeapTileStore;
+import com.flowingcode.vaadin.addons.zoomist.image.TileDirectory;
+import com.flowingcode.vaadin.addons.zoomist.image.TilePyramid;
+import com.flowingcode.vaadin.addons.zoomist.image.TileStore;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TileStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static final TileStore.Descriptor DESCRIPTOR =
+      new TileStore.Descriptor(new TilePyramid(600, 400, 256), "png", 1234);
+
+  private void testRoundTrip(TileStore store) throws IOException {
+    Assert.assertNull(store.getTile(0, 1, 1));
+    store.putTile(0, 1, 1, new byte[] {1, 2, 3});
+    store.putTile(2, 0, 0, new byte[] {4});
+    store.putOverview(new byte[] {5, 6});
+    store.putDescriptor(DESCRIPTOR);
+    assertContents(store);
+  }
+
+  private void assertContents(TileStore store) throws IOException {
+    Assert.assertArrayEquals(new byte[] {1, 2, 3}, store.getTile(0, 1, 1));
+    Assert.assertArrayEquals(new byte[] {4}, store.getTile(2, 0, 0));
+    Assert.assertNull(store.getTile(0, 0, 1));
+    Assert.assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), store.getTileBuffer(0, 1, 1));
+    Assert.assertNull(store.getTileBuffer(0, 0, 1));
+    Assert.assertTrue(store.containsTile(0, 1, 1));
+    Assert.assertFalse(store.containsTile(0, 0, 1));
+    Assert.assertTrue(store.containsOverview());
+    Assert.assertArrayEquals(new byte[] {5, 6}, store.getOverview());
+    Assert.assertEquals(600, store.getDescriptor().getPyramid().getWidth());
+    Assert.assertEquals("png", store.getDescriptor().getFormat());
+    Assert.assertEquals(1234, store.getDescriptor().getLastModified());
+  }
+
+  @Test
+  public void testHeapStore() throws IOException {
+    testRoundTrip(new HeapTileStore(1024));
+  }
+
+  @Test
+  public void testHeapStoreEvictsLeastRecentlyUsed() {
+    HeapTileStore store = new HeapTileStore(10);
+    store.putTile(0, 0, 0, new byte[4]);
+    store.putTile(0, 1, 0, new byte[4]);
+    store.getTile(0, 0, 0);
+    store.putTile(0, 2, 0, new byte[4]);
+    Assert.assertNotNull(store.getTile(0, 0, 0));
+    Assert.assertNull(store.getTile(0, 1, 0));
+    Assert.assertEquals(8, store.getSize());
+  }
+
+  @Test
+  public void testDirectoryStore() throws IOException {
+    File root = folder.newFolder();
+    testRoundTrip(new TileDirectory(root, "png"));
+    Assert.assertTrue(new File(root, "0/1_1.png").isFile());
+    assertContents(new TileDirectory(root, "png"));
+  }
+
+  @Test
+  public void testArchiveStore() throws IOException {
+    File file = new File(folder.getRoot(), "a.tiles");
+    try (ArchiveTileStore.Writer writer = ArchiveTileStore.create(file)) {
+      testRoundTrip(writer);
+    }
+    ArchiveTileStore store = new ArchiveTileStore(file);
+    Assert.assertEquals(2, store.getTileCount());
+    assertContents(store);
+    Assert.assertTrue(store.isReadOnly());
+  }
+
+  @Test
+  public void testArchiveWithoutDescriptorIsDiscarded() throws IOException {
+    File file = new File(folder.getRoot(), "a.tiles");
+    try (ArchiveTileStore.Writer writer = ArchiveTileStore.create(file)) {
+      writer.putTile(0, 0, 0, new byte[] {1});
+    }
+    Assert.assertFalse(file.exists());
+  }
+
+}
@@ -0,0 +1,61 @@
+/*-
+ * #%L
+ * Zoomist Add-on
+ * %%
+ * Copyright (C) 2023 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.zoomist.test;
+
+import com.flowingcode.vaadin.addons.zoomist.Zoomist;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ViewCommandsTest {
+
+  @Test
+  public void testAdjacentCommandsOfTheSameKindAreMerged() {
+    Zoomist zoomist = new Zoomist("");
+    zoomist.batch(commands -> {
+      commands.zoom(0.5).zoomTo(2).moveTo(1, 1).move(2, 2).moveTo(3, 3).slideTo(0.5).zoomTo(4);
+      Assert.assertEquals("ViewCommands[zoomTo[2.0], moveTo[3.0, 3.0], zoomTo[4.0]]",
+          commands.toString());
+    });
+    Assert.assertEquals(4, zoomist.getViewState().getRatio(), 0);
+    Assert.assertEquals(3, zoomist.getViewState().getTranslateX(), 0);
+  }
+
+  @Test
+  public void testCommandsOfDifferentKindsAreKept() {
+    Zoomist zoomist = new Zoomist("");
+    zoomist.batch(commands -> commands.zoomTo(2));
+    zoomist.move(10, 0);
+    zoomist.batch(commands -> commands.zoomTo(3));
+    zoomist.batch(commands -> Assert.assertEquals(
+        "ViewCommands[zoomTo[2.0], move[10.0, 0.0], zoomTo[3.0]]", commands.toString()));
+  }
+
+  @Test
+  public void testRelativeZoomUpdatesViewState() {
+    Zoomist zoomist = new Zoomist("");
+    zoomist.batch(commands -> commands.zoomTo(2).move(5, 5).zoom(0.5));
+    Assert.assertEquals(3, zoomist.getViewState().getRatio(), 1e-9);
+    Assert.assertEquals(5, zoomist.getViewState().getTranslateY(), 0);
+
+    zoomist.reset();
+    Assert.assertEquals(1, zoomist.getViewState().getRatio(), 0);
+  }
+
+}